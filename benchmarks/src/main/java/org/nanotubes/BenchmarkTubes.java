@@ -0,0 +1,28 @@
+package org.nanotubes;
+
+import org.nanotubes.generation.Geom.Tube;
+
+/**
+ * Класс подбирающий цилиндр для измерений: плотность частиц на поверхности постоянна,
+ * поэтому при изменении количества частиц меняются только размеры цилиндра
+ */
+public final class BenchmarkTubes {
+    /**
+     * Площадь боковой поверхности цилиндра, приходящаяся на одну частицу
+     */
+    private static final double AREA_PER_PARTICLE = 4;
+
+    private BenchmarkTubes() {
+    }
+
+    /**
+     * Метод создающий цилиндр для заданного количества частиц
+     * @param numberOfParticle количество частиц
+     * @param aspectRatio отношение высоты цилиндра к длине его окружности
+     * @return цилиндр
+     */
+    public static Tube tube(int numberOfParticle, double aspectRatio) {
+        double circumference = Math.sqrt(AREA_PER_PARTICLE * numberOfParticle / aspectRatio);
+        return new Tube(circumference / (2 * Math.PI), circumference * aspectRatio);
+    }
+}
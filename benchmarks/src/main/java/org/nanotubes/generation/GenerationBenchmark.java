@@ -0,0 +1,42 @@
+package org.nanotubes.generation;
+
+import org.nanotubes.generation.Geom.ParticleSystem;
+import org.nanotubes.generation.Geom.Tube;
+import org.nanotubes.BenchmarkTubes;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Измерение генерации частиц на боковой поверхности цилиндра без графических объектов JavaFX
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GenerationBenchmark {
+    /**
+     * Количество частиц
+     */
+    @Param({"100", "1000", "10000", "50000"})
+    private int numberOfParticle;
+    /**
+     * Отношение высоты цилиндра к длине его окружности
+     */
+    @Param({"0.25", "1", "4"})
+    private double aspectRatio;
+
+    private Tube tube;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tube = BenchmarkTubes.tube(numberOfParticle, aspectRatio);
+    }
+
+    @Benchmark
+    public ParticleSystem ParticlesGeneration() {
+        return new Generation(tube, numberOfParticle).ParticleSystemGeneration();
+    }
+}
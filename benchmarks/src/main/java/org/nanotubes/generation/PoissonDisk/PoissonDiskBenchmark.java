@@ -0,0 +1,45 @@
+package org.nanotubes.generation.PoissonDisk;
+
+import org.nanotubes.generation.Geom.Tube;
+import org.nanotubes.BenchmarkTubes;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Измерение выборки точек по диску Пуассона на развертке цилиндра с теми же параметрами, что и в Generation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PoissonDiskBenchmark {
+    /**
+     * Количество частиц
+     */
+    @Param({"100", "1000", "10000", "50000"})
+    private int numberOfParticle;
+    /**
+     * Отношение высоты цилиндра к длине его окружности
+     */
+    @Param({"0.25", "1", "4"})
+    private double aspectRatio;
+
+    private double width, height, radius;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Tube tube = BenchmarkTubes.tube(numberOfParticle, aspectRatio);
+        radius = Math.sqrt(tube.getRadius() * tube.getHeight() / (2 * numberOfParticle));
+        width = tube.getRadius() * 2 * Math.PI - 2 * radius;
+        height = tube.getHeight();
+    }
+
+    @Benchmark
+    public List<Vector2DDouble> ListOfPointsPoissonDisk() {
+        return new PoissonDiskIn2D(0, 0, width, height, radius * 2, numberOfParticle).ListOfPointsPoissonDisk();
+    }
+}
@@ -0,0 +1,67 @@
+package org.nanotubes.minimization;
+
+import org.nanotubes.BenchmarkTubes;
+import org.nanotubes.generation.Generation;
+import org.nanotubes.generation.Geom.ParticleSystem;
+import org.nanotubes.generation.Geom.Tube;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Измерение одного шага минимизации и полного пересчета энергии системы без графических объектов JavaFX.
+ * Шаг минимизации каждый раз выполняется над копией исходной конфигурации, иначе последующие измерения
+ * минимизировали бы уже расслабленную систему. Шаг перебирает все пары частиц, поэтому количество частиц
+ * ограничено 10000 (для 50000 частиц один шаг длится дольше окна измерения)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MinimizationBenchmark {
+    /**
+     * Количество частиц
+     */
+    @Param({"100", "1000", "10000"})
+    private int numberOfParticle;
+    /**
+     * Отношение высоты цилиндра к длине его окружности
+     */
+    @Param({"0.25", "1", "4"})
+    private double aspectRatio;
+
+    private Tube tube;
+    /**
+     * Исходная конфигурация после генерации
+     */
+    private ParticleSystem initial;
+    private Minimization minimization;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tube = BenchmarkTubes.tube(numberOfParticle, aspectRatio);
+        initial = new Generation(tube, numberOfParticle).ParticleSystemGeneration();
+    }
+
+    @Setup(Level.Invocation)
+    public void copyInitial() {
+        ParticleSystem system = new ParticleSystem(initial.size());
+        for (int i = 0; i < initial.size(); i++) {
+            system.set(i, initial.getPhi(i), initial.getRho(i), initial.getZ(i), initial.getRadius(i));
+        }
+        minimization = new Minimization(system, 2, tube);
+    }
+
+    @Benchmark
+    public ParticleSystem stepOfMinimization() {
+        minimization.stepOfMinimization();
+        return minimization.getSystem();
+    }
+
+    @Benchmark
+    public double energyOfSystem() {
+        return minimization.energyOfSystem();
+    }
+}
@@ -0,0 +1,60 @@
+package org.nanotubes.minimization;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Math.pow;
+
+/**
+ * Сравнение вычисления энергии и силы пары частиц через Math.pow и Math.sqrt с вычислением через PairKernel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PairKernelBenchmark {
+    /**
+     * Степень (из теории)
+     */
+    @Param({"1", "2", "6"})
+    private int degree;
+
+    /**
+     * Квадраты расстояний между частицами
+     */
+    private double[] r2;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(1);
+        r2 = new double[4096];
+        for (int i = 0; i < r2.length; i++) {
+            r2[i] = 0.5 + 100 * random.nextDouble();
+        }
+    }
+
+    @Benchmark
+    public double mathPow() {
+        double sum = 0;
+        for (double value : r2) {
+            double r = Math.sqrt(value);
+            sum += 1 / pow(r, degree) + degree / pow(r, degree + 2) + degree / pow(r, degree + 2);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double pairKernel() {
+        double sum = 0;
+        for (double value : r2) {
+            double energy = PairKernel.energy(value, degree);
+            double force = PairKernel.force(value, energy, degree);
+            sum += energy + force + force;
+        }
+        return sum;
+    }
+}
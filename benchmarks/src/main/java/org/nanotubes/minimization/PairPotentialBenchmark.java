@@ -0,0 +1,65 @@
+package org.nanotubes.minimization;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение вычисления энергии и силы пары частиц через PairPotential с прямым вызовом PairKernel
+ * (стоимость абстракции во внутреннем цикле) и потенциалов между собой
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PairPotentialBenchmark {
+    /**
+     * Описание потенциала (см. PairPotential.of)
+     */
+    @Param({"power:2", "power:1", "lj:1,1", "lj:1,1@2.5", "yukawa:1,0.5", "soft:1,1.5"})
+    private String potential;
+
+    /**
+     * Квадраты расстояний между частицами
+     */
+    private double[] r2;
+    /**
+     * Потенциал взаимодействия пары частиц
+     */
+    private PairPotential pair;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(1);
+        r2 = new double[4096];
+        for (int i = 0; i < r2.length; i++) {
+            r2[i] = 0.8 + 8 * random.nextDouble();
+        }
+        pair = PairPotential.of(potential);
+    }
+
+    @Benchmark
+    public double pairPotential() {
+        double[] force = new double[1];
+        double sum = 0;
+        for (double value : r2) {
+            sum += pair.energyAndForce(value, force) + force[0];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double pairKernel() {
+        // базовая линия: прямой вызов PairKernel для той же степени (для остальных потенциалов - степень 2)
+        int degree = pair instanceof InversePowerPotential power ? power.getDegree() : 2;
+        double sum = 0;
+        for (double value : r2) {
+            double energy = PairKernel.energy(value, degree);
+            sum += energy + PairKernel.force(value, energy, degree);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,70 @@
+package org.nanotubes.minimization;
+
+import org.nanotubes.BenchmarkTubes;
+import org.nanotubes.generation.Generation;
+import org.nanotubes.generation.Geom.ParticleSystem;
+import org.nanotubes.generation.Geom.Tube;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение шага минимизации со скалярным и векторным (VectorKernel) циклом по всем парам частиц.
+ * Модуль jdk.incubator.vector подключается в отдельной JVM измерения; на процессорах с AVX2 в векторе 4 числа,
+ * с AVX-512 - 8. Как и в MinimizationBenchmark, шаг каждый раз выполняется над копией исходной конфигурации
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorKernelBenchmark {
+    /**
+     * Количество частиц
+     */
+    @Param({"1000", "4000"})
+    private int numberOfParticle;
+    /**
+     * Степень (из теории)
+     */
+    @Param({"1", "2", "3"})
+    private int degree;
+    /**
+     * Признак векторного вычисления взаимодействия
+     */
+    @Param({"false", "true"})
+    private boolean vectorization;
+
+    private Tube tube;
+    /**
+     * Исходная конфигурация после генерации
+     */
+    private ParticleSystem initial;
+    private Minimization minimization;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tube = BenchmarkTubes.tube(numberOfParticle, 1);
+        initial = new Generation(tube, numberOfParticle).ParticleSystemGeneration();
+    }
+
+    @Setup(Level.Invocation)
+    public void copyInitial() {
+        ParticleSystem system = new ParticleSystem(initial.size());
+        for (int i = 0; i < initial.size(); i++) {
+            system.set(i, initial.getPhi(i), initial.getRho(i), initial.getZ(i), initial.getRadius(i));
+        }
+        minimization = new Minimization(system, degree, tube);
+        minimization.setVectorization(vectorization);
+        if (minimization.isVectorized() != vectorization) {
+            throw new IllegalStateException("jdk.incubator.vector is not available");
+        }
+    }
+
+    @Benchmark
+    public ParticleSystem stepOfMinimization() {
+        minimization.stepOfMinimization();
+        return minimization.getSystem();
+    }
+}
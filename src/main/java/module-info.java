@@ -1,9 +1,11 @@
 module org.nanotubes {
-    requires javafx.controls;
+    requires transitive javafx.controls;
     requires java.desktop;
+    requires static jdk.incubator.vector;
     exports org.nanotubes;
     exports org.nanotubes.generation;
     exports org.nanotubes.generation.PoissonDisk;
     exports org.nanotubes.generation.Geom;
     exports org.nanotubes.generation.Mapping;
+    exports org.nanotubes.minimization;
 }
@@ -5,6 +5,7 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
 import javafx.geometry.HPos;
+import javafx.geometry.Point3D;
 import javafx.geometry.VPos;
 
 import javafx.scene.*;
@@ -28,9 +29,10 @@ import org.nanotubes.generation.Geom.Particle;
 import org.nanotubes.generation.Geom.Tube;
 import org.nanotubes.generation.Mapping.TubeView;
 import org.nanotubes.generation.Mapping.Mapping;
+import org.nanotubes.minimization.MetricSeries;
 import org.nanotubes.minimization.Minimization;
+import org.nanotubes.minimization.MinimizationTask;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 
 /**
@@ -63,6 +65,24 @@ public class NanoTube extends Application {
      * Положение камеры по y при открытии окна
      */
     private final Rotate rotateY = new Rotate(0, Rotate.Y_AXIS);
+    /**
+     * Выполняемая минимизация (null - минимизация не выполняется)
+     */
+    private MinimizationTask minimizationTask;
+    /**
+     * Отображение текущих частиц (null - частицы еще не созданы)
+     */
+    private Mapping mapping;
+    /**
+     * Заголовок окна без сведений о ходе минимизации
+     */
+    private String title = "NanoTube Student Project";
+
+    /**
+     * Конструктор класса, вызываемый JavaFX при запуске программы
+     */
+    public NanoTube() {
+    }
 
     /**
      * Метод содержащий элементы сцены
@@ -145,25 +165,61 @@ public class NanoTube extends Application {
             int n = Integer.parseInt(textNumber.getText());
             tube.setHeight(Double.parseDouble(textFieldHeight.getText()));
             tube.setRadius(Double.parseDouble(textFieldRadius.getText()));
-            ObservableList<Particle> particles = new Generation(tube, n).ParticlesGeneration(particlesList);
-            new Mapping(n,group,tube,particles).MappingParticle();
+            Generation generation = new Generation(tube, n);
+            ObservableList<Particle> particles = generation.ParticlesGeneration(particlesList);
+            title = "NanoTube Student Project (seed " + generation.getSeed() + ")";
+            stage.setTitle(title);
+            mapping = new Mapping(n,group,tube,particles);
+            mapping.setLevelOfDetail(true);
+            updateCamera(subScene);
+            mapping.MappingParticle();
         });
 
         buttonEnergyMinimization.setOnAction(e -> {
+            if (minimizationTask != null) {
+                minimizationTask.stop();
+                return;
+            }
             Minimization minimization = new Minimization(particlesList,2,tube);
-            ObservableList<Particle> list = minimization.minimization();
-            new Mapping(list.size(),group,tube,list).MappingParticle();
-            buttonDiagram.setOnAction(actionEvent -> {
-                Chart(stage,"Step","E","Minimization Process for Energy", "Diagram for Energy",400,600, minimization.getArrayEnergy());
-                Chart(stage,"Step","k","Minimization Process for k", "Diagram for k",-300,-100, minimization.getArrayCoefficientForZ());
+            MinimizationTask task = new MinimizationTask(minimization, particlesList);
+            if (mapping != null) {
+                task.setOnFrame(mapping::update);
+            }
+            minimizationTask = task;
+            buttonEnter.disableProperty().bind(task.runningProperty());
+            buttonEnergyMinimization.setText("Stop");
+            labelEnergyValue.textProperty().bind(task.messageProperty());
+            task.titleProperty().addListener((observable, oldValue, newValue) -> stage.setTitle(title + " - " + newValue));
+            task.runningProperty().addListener((observable, wasRunning, running) -> {
+                if (running) {
+                    return;
+                }
+                minimizationTask = null;
+                buttonEnter.disableProperty().unbind();
+                buttonEnter.setDisable(false);
+                buttonEnergyMinimization.setText("Minimization");
+                labelEnergyValue.textProperty().unbind();
+                stage.setTitle(title);
+                if (task.getException() != null) {
+                    labelEnergyValue.setText("failed: " + task.getException().getMessage());
+                } else {
+                    labelEnergyValue.setText(String.valueOf(minimization.getArrayEnergy().getLast()));
+                }
+                buttonDiagram.setOnAction(actionEvent -> {
+                    Chart(stage,"Step","E","Minimization Process for Energy", "Diagram for Energy",400,600, minimization.getArrayEnergy());
+                    Chart(stage,"Step","k","Minimization Process for k", "Diagram for k",-300,-100, minimization.getArrayCoefficientForZ());
+                });
             });
+            Thread thread = new Thread(task, "minimization");
+            thread.setDaemon(true);
+            thread.start();
         });
 
 
         var scene = new Scene(Top, WIDTH,HEIGHT);
         stage.setScene(scene);
         stage.show();
-        stage.setTitle("NanoTube Student Project");
+        stage.setTitle(title);
     }
 
     /**
@@ -194,10 +250,26 @@ public class NanoTube extends Application {
             }
             anchorX = event.getSceneX();
             anchorY = event.getSceneY();
+            updateCamera(scene);
         });
     }
 
-    private void Chart (Stage stage, String x, String y, String title, String titleDiagram, int getX, int getY, ArrayList<Double> array) {
+    /**
+     * Метод передающий отображению частиц положение камеры для выбора уровня детализации и отсечения частиц
+     * на обратной стороне цилиндра (вызывается только после движения камеры)
+     * @param scene сцена с перспективной камерой
+     */
+    private void updateCamera(SubScene scene) {
+        if (mapping == null) {
+            return;
+        }
+        PerspectiveCamera camera = (PerspectiveCamera) scene.getCamera();
+        Point3D position = camera.getLocalToSceneTransform().transform(0, 0, 0);
+        double pixelsPerUnit = scene.getHeight() / (2 * Math.tan(Math.toRadians(camera.getFieldOfView() / 2)));
+        mapping.setCamera(position.getX(), position.getY(), position.getZ(), pixelsPerUnit);
+    }
+
+    private void Chart (Stage stage, String x, String y, String title, String titleDiagram, int getX, int getY, MetricSeries array) {
         final NumberAxis xAxis = new NumberAxis();
         final NumberAxis yAxis = new NumberAxis();
         yAxis.setLabel(y);
@@ -206,20 +278,27 @@ public class NanoTube extends Application {
         final LineChart<Number,Number> lineChart = new LineChart<Number,Number>(xAxis,yAxis);
         lineChart.setTitle(title);
 
-        XYChart.Series series = new XYChart.Series();
+        XYChart.Series<Number,Number> series = new XYChart.Series<>();
         series.setName(y);
-
-        if (array.size() <= 5000) {
-            for (int i = 0; i < array.size(); i++) {
-                series.getData().add(new XYChart.Data(i, array.get(i)));
-            }
-        } else {
-            for (int i = 0; i < 5000; i++) {
-                series.getData().add(new XYChart.Data(i, array.get(i)));
-            }
+        for (int b = 0; b < array.getBucketCount(); b++) {
+            series.getData().add(new XYChart.Data<>(array.getStep(b), array.getMean(b)));
         }
         Scene scene = new Scene(lineChart, 700, 600);
         lineChart.getData().add(series);
+
+        // на длинных расчетах точка графика - среднее по корзине шагов, поэтому разброс внутри корзины рисуется отдельно
+        if (array.getBucketWidth() > 1) {
+            XYChart.Series<Number,Number> seriesMin = new XYChart.Series<>();
+            XYChart.Series<Number,Number> seriesMax = new XYChart.Series<>();
+            seriesMin.setName(y + " min");
+            seriesMax.setName(y + " max");
+            for (int b = 0; b < array.getBucketCount(); b++) {
+                seriesMin.getData().add(new XYChart.Data<>(array.getStep(b), array.getMin(b)));
+                seriesMax.getData().add(new XYChart.Data<>(array.getStep(b), array.getMax(b)));
+            }
+            lineChart.getData().add(seriesMin);
+            lineChart.getData().add(seriesMax);
+        }
         Stage WindowDiagram = new Stage();
         WindowDiagram.setTitle(titleDiagram);
         WindowDiagram.setScene(scene);
@@ -2,6 +2,9 @@ package org.nanotubes;
 
 public class SystemInfo {
 
+    private SystemInfo() {
+    }
+
     public static String javaVersion() {
         return System.getProperty("java.version");
     }
@@ -0,0 +1,389 @@
+package org.nanotubes.batch;
+
+import org.nanotubes.generation.Generation;
+import org.nanotubes.generation.Geom.ParticleSystem;
+import org.nanotubes.generation.Geom.Tube;
+import org.nanotubes.minimization.AbstractMinimizer;
+import org.nanotubes.minimization.ForceField;
+import org.nanotubes.minimization.InversePowerPotential;
+import org.nanotubes.minimization.MetricSeries;
+import org.nanotubes.minimization.Minimization;
+import org.nanotubes.minimization.MinimizerResult;
+import org.nanotubes.minimization.PairPotential;
+import org.nanotubes.minimization.TrajectoryWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Класс запускающий генерацию и минимизацию из командной строки без графического интерфейса JavaFX
+ * Результат записывается в каталог: particles.csv - координаты частиц, energy.csv - ход минимизации
+ */
+public class NanoTubeBatch {
+    /**
+     * Подсказка по параметрам командной строки
+     */
+    private static final String USAGE = "usage: NanoTubeBatch --radius R --height H --particles N"
+            + " [--degree 2] [--potential SPEC] [--wall SPEC] [--seed S] [--cutoff C] [--threads T] [--output DIR]"
+            + " [--checkpoint FILE [--checkpoint-every 100]] [--trajectory FILE [--trajectory-every 10]]"
+            + "\n       NanoTubeBatch --radius R --height H --particles N --minimizer fire|bb [--tolerance 1e-3]"
+            + " [--degree 2] [--potential SPEC] [--wall SPEC] [--seed S] [--cutoff C] [--ewald TOL]"
+            + " [--tree THETA [--validate true]] [--output DIR]"
+            + "\n       NanoTubeBatch --resume FILE [--checkpoint FILE [--checkpoint-every 100]] [--trajectory FILE [--trajectory-every 10]]"
+            + " [--output DIR]"
+            + "\n       SPEC: power:degree | lj:epsilon,sigma | yukawa:strength,kappa | soft:epsilon,sigma, with @cutoff to shift";
+
+    /**
+     * Радиус цилиндра
+     */
+    private double radius = Double.NaN;
+    /**
+     * Высота цилиндра
+     */
+    private double height = Double.NaN;
+    /**
+     * Количество частиц
+     */
+    private int numberOfParticle;
+    /**
+     * Степень (из теории)
+     */
+    private int degree = 2;
+    /**
+     * Потенциал взаимодействия пары частиц (null - 1/r^degree)
+     */
+    private PairPotential pair;
+    /**
+     * Потенциал взаимодействия частицы с краем цилиндра (null - 1/d^degree)
+     */
+    private PairPotential wall;
+    /**
+     * Начальное значение генератора случайных чисел
+     */
+    private long seed = System.nanoTime();
+    /**
+     * Радиус обрезки взаимодействия (0 - учитываются все пары частиц)
+     */
+    private double cutoff;
+    /**
+     * Количество потоков для параллельного шага минимизации (0 - последовательный шаг)
+     */
+    private int threads;
+    /**
+     * Каталог для записи результатов
+     */
+    private Path output = Paths.get(".");
+    /**
+     * Файл контрольной точки (null - контрольные точки не записываются)
+     */
+    private Path checkpoint;
+    /**
+     * Через сколько шагов записывается контрольная точка
+     */
+    private int checkpointInterval = 100;
+    /**
+     * Контрольная точка, с которой продолжается расчет (null - новый расчет)
+     */
+    private Path resume;
+    /**
+     * Файл траектории (null - траектория не записывается)
+     */
+    private Path trajectory;
+    /**
+     * Через сколько шагов записывается кадр траектории
+     */
+    private int trajectoryStride = 10;
+    /**
+     * Минимизатор: halving - шаг Minimization с делением коэффициентов пополам, fire, bb - минимизаторы Minimizer
+     */
+    private String minimizer = "halving";
+    /**
+     * Точность минимизаторов Minimizer (среднеквадратичный градиент на частицу)
+     */
+    private double tolerance = AbstractMinimizer.DEFAULT_TOLERANCE;
+    /**
+     * Точность суммы Эвальда для взаимодействия 1/r (0 - учитывается ближайший образ частицы)
+     */
+    private double ewald;
+    /**
+     * Параметр раскрытия узлов дерева Барнса-Хата (отрицательное значение - дерево не используется)
+     */
+    private double tree = -1;
+    /**
+     * Признак сравнения энергии и градиента дерева Барнса-Хата с точной суммой по всем парам частиц
+     */
+    private boolean validate;
+
+    /**
+     * Метод запускающий расчет из командной строки. Код завершения: 0 - расчет выполнен, 1 - расчет не удался
+     * (ошибка чтения или записи файлов, частицы не помещаются на цилиндр, несовместимые режимы расчета),
+     * 2 - неверные параметры командной строки
+     * @param args параметры командной строки
+     */
+    public static void main(String[] args) {
+        NanoTubeBatch batch = new NanoTubeBatch();
+        try {
+            batch.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        try {
+            batch.run();
+        } catch (IOException e) {
+            System.err.println("batch failed: " + e.getMessage());
+            System.exit(1);
+        } catch (RuntimeException e) {
+            System.err.println("batch failed: " + e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Метод разбирающий параметры командной строки
+     * @param args параметры командной строки
+     */
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("missing value for " + args[i]);
+            }
+            String value = args[i + 1];
+            try {
+                switch (args[i]) {
+                    case "--radius" -> radius = Double.parseDouble(value);
+                    case "--height" -> height = Double.parseDouble(value);
+                    case "--particles" -> numberOfParticle = Integer.parseInt(value);
+                    case "--degree" -> degree = Integer.parseInt(value);
+                    case "--potential" -> pair = PairPotential.of(value);
+                    case "--wall" -> wall = PairPotential.of(value);
+                    case "--seed" -> seed = Long.parseLong(value);
+                    case "--cutoff" -> cutoff = Double.parseDouble(value);
+                    case "--threads" -> threads = Integer.parseInt(value);
+                    case "--output" -> output = Paths.get(value);
+                    case "--checkpoint" -> checkpoint = Paths.get(value);
+                    case "--checkpoint-every" -> checkpointInterval = Integer.parseInt(value);
+                    case "--resume" -> resume = Paths.get(value);
+                    case "--trajectory" -> trajectory = Paths.get(value);
+                    case "--trajectory-every" -> trajectoryStride = Integer.parseInt(value);
+                    case "--minimizer" -> minimizer = value;
+                    case "--tolerance" -> tolerance = Double.parseDouble(value);
+                    case "--ewald" -> ewald = Double.parseDouble(value);
+                    case "--tree" -> tree = Double.parseDouble(value);
+                    case "--validate" -> validate = Boolean.parseBoolean(value);
+                    default -> throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("bad value for " + args[i] + ": " + value);
+            }
+        }
+        if (checkpointInterval <= 0 || trajectoryStride <= 0) {
+            throw new IllegalArgumentException("checkpoint and trajectory intervals must be positive");
+        }
+        if (!minimizer.equals("halving")) {
+            AbstractMinimizer.of(minimizer);
+            if (resume != null || checkpoint != null || trajectory != null || threads > 0) {
+                throw new IllegalArgumentException("--minimizer " + minimizer
+                        + " does not support --resume, --checkpoint, --trajectory and --threads");
+            }
+        }
+        if (ewald > 0 && (minimizer.equals("halving") || !(pairPotential() instanceof InversePowerPotential power && power.getDegree() == 1))) {
+            throw new IllegalArgumentException("--ewald needs --minimizer fire|bb and the 1/r potential (--degree 1)");
+        }
+        if (tree >= 0 && (minimizer.equals("halving") || ewald > 0 || !(pairPotential() instanceof InversePowerPotential))) {
+            throw new IllegalArgumentException("--tree needs --minimizer fire|bb, the 1/r^degree potential and no --ewald");
+        }
+        if (validate && tree < 0) {
+            throw new IllegalArgumentException("--validate needs --tree");
+        }
+        if (resume == null && (!(radius > 0) || !(height > 0) || numberOfParticle <= 0)) {
+            throw new IllegalArgumentException("radius, height and particles must be positive");
+        }
+    }
+
+    /**
+     * Метод выполняющий генерацию и минимизацию и записывающий результаты
+     * @throws IOException ошибка чтения контрольной точки или записи результатов
+     */
+    private void run() throws IOException {
+        if (!minimizer.equals("halving")) {
+            runMinimizer();
+            return;
+        }
+        long start = System.nanoTime();
+        Minimization minimization;
+        if (resume != null) {
+            // параметры расчета, обрезка и режим шага берутся из контрольной точки
+            minimization = Minimization.resume(resume);
+            numberOfParticle = minimization.getSystem().size();
+            seed = minimization.getSeed();
+        } else {
+            Tube tube = new Tube(radius, height);
+            ParticleSystem system = new Generation(tube, numberOfParticle, seed).ParticleSystemGeneration();
+            minimization = new Minimization(system, degree, tube);
+            minimization.setSeed(seed);
+            if (cutoff > 0) {
+                minimization.setCutoff(cutoff);
+            }
+            if (pair != null || wall != null) {
+                minimization.setPotential(pairPotential(), wallPotential());
+            }
+            minimization.setParallelism(threads);
+        }
+        minimization.setCheckpoint(checkpoint, checkpointInterval);
+        ParticleSystem system = minimization.getSystem();
+        if (trajectory != null) {
+            try (TrajectoryWriter writer = new TrajectoryWriter(trajectory, system, minimization.getPairPotential(),
+                    minimization.getWallPotential(), minimization.getRadiusTube(), minimization.getHeightTube(), trajectoryStride)) {
+                minimization.setTrajectory(writer);
+                minimization.minimizationOfSystem();
+            }
+        } else {
+            minimization.minimizationOfSystem();
+        }
+        long time = System.nanoTime() - start;
+
+        Files.createDirectories(output);
+        writeParticles(output.resolve("particles.csv"), system);
+        writeHistory(output.resolve("energy.csv"), minimization);
+
+        // градиент итоговых координат по ForceField позволяет сравнить результат с минимизаторами Minimizer
+        ForceField field = new ForceField(minimization.getPairPotential(), minimization.getWallPotential(),
+                new Tube(minimization.getRadiusTube(), minimization.getHeightTube()));
+        field.setCutoff(minimization.getCutoff());
+        double[] gradX = new double[numberOfParticle], gradZ = new double[numberOfParticle];
+        field.evaluate(system, gradX, gradZ);
+        double gradient = ForceField.norm(gradX, gradZ);
+        MetricSeries energy = minimization.getArrayEnergy();
+        System.out.println("particles=" + numberOfParticle + " seed=" + seed + " steps=" + (energy.size() - 1)
+                + " gradient=" + gradient + " energy=" + energy.getLast() + " time_ms=" + time / 1_000_000);
+    }
+
+    /**
+     * Метод выполняющий генерацию и минимизацию минимизатором Minimizer и записывающий результаты.
+     * Выводится количество шагов до заданной точности, чтобы минимизаторы можно было сравнить на одной конфигурации
+     * @throws IOException ошибка записи результатов
+     */
+    private void runMinimizer() throws IOException {
+        long start = System.nanoTime();
+        Tube tube = new Tube(radius, height);
+        ParticleSystem system = new Generation(tube, numberOfParticle, seed).ParticleSystemGeneration();
+        ForceField field = new ForceField(pairPotential(), wallPotential(), tube);
+        field.setCutoff(cutoff);
+        field.setEwald(ewald);
+        field.setTree(tree);
+        AbstractMinimizer method = AbstractMinimizer.of(minimizer);
+        method.setTolerance(tolerance);
+        MinimizerResult result = method.minimize(field, system);
+        long time = System.nanoTime() - start;
+
+        Files.createDirectories(output);
+        writeParticles(output.resolve("particles.csv"), system);
+        MetricSeries energy = result.getEnergy();
+        try (BufferedWriter writer = Files.newBufferedWriter(output.resolve("energy.csv"))) {
+            writer.write("step,energy,energy_min,energy_max");
+            writer.newLine();
+            for (int b = 0; b < energy.getBucketCount(); b++) {
+                writer.write(energy.getStep(b) + "," + energy.getMean(b) + "," + energy.getMin(b) + "," + energy.getMax(b));
+                writer.newLine();
+            }
+        }
+        System.out.println("particles=" + numberOfParticle + " seed=" + seed + " minimizer=" + minimizer
+                + " steps=" + result.getIterations() + " evaluations=" + result.getEvaluations()
+                + " converged=" + result.isConverged() + " gradient=" + result.getGradientNorm()
+                + " energy=" + energy.getLast() + " time_ms=" + time / 1_000_000);
+        if (validate) {
+            validateTree(tube, system);
+        }
+    }
+
+    /**
+     * Метод сравнивающий энергию и градиент итоговой конфигурации, вычисленные деревом Барнса-Хата, с точной суммой
+     * ForceField по всем парам частиц (ближайший образ вдоль развертки). Выводятся относительное отклонение энергии
+     * и среднеквадратичное отклонение градиента на частицу (вблизи минимума сам градиент мал, поэтому отклонение
+     * сравнивается с точностью минимизатора, а не с градиентом)
+     * @param tube цилиндр
+     * @param system координаты частиц
+     */
+    private void validateTree(Tube tube, ParticleSystem system) {
+        ForceField approximate = new ForceField(pairPotential(), wallPotential(), tube);
+        approximate.setTree(tree);
+        ForceField exact = new ForceField(pairPotential(), wallPotential(), tube);
+        double[] gradX = new double[numberOfParticle], gradZ = new double[numberOfParticle];
+        double[] exactX = new double[numberOfParticle], exactZ = new double[numberOfParticle];
+        long start = System.nanoTime();
+        double energy = approximate.evaluate(system, gradX, gradZ);
+        long treeTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        double exactEnergy = exact.evaluate(system, exactX, exactZ);
+        long exactTime = System.nanoTime() - start;
+        double exactGradient = ForceField.norm(exactX, exactZ);
+        for (int i = 0; i < numberOfParticle; i++) {
+            gradX[i] -= exactX[i];
+            gradZ[i] -= exactZ[i];
+        }
+        System.out.println("tree_theta=" + tree + " energy_error=" + Math.abs(energy - exactEnergy) / Math.abs(exactEnergy)
+                + " gradient_error=" + ForceField.norm(gradX, gradZ) + " exact_gradient=" + exactGradient
+                + " tree_ms=" + treeTime / 1_000_000 + " exact_ms=" + exactTime / 1_000_000);
+    }
+
+    /**
+     * Метод возвращающий потенциал взаимодействия пары частиц
+     * @return заданный потенциал или 1/r^degree
+     */
+    private PairPotential pairPotential() {
+        return pair != null ? pair : new InversePowerPotential(degree);
+    }
+
+    /**
+     * Метод возвращающий потенциал взаимодействия частицы с краем цилиндра
+     * @return заданный потенциал или 1/d^degree
+     */
+    private PairPotential wallPotential() {
+        return wall != null ? wall : new InversePowerPotential(degree);
+    }
+
+    /**
+     * Метод записывающий координаты частиц
+     * @param file файл
+     * @param system координаты частиц
+     * @throws IOException ошибка записи
+     */
+    static void writeParticles(Path file, ParticleSystem system) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("i,phi,rho,z,radius");
+            writer.newLine();
+            for (int i = 0; i < system.size(); i++) {
+                writer.write(i + "," + system.getPhi(i) + "," + system.getRho(i) + ","
+                        + system.getZ(i) + "," + system.getRadius(i));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Метод записывающий значения энергии и коэффициентов по корзинам истории минимизации
+     * (на длинных расчетах одна строка описывает несколько подряд идущих шагов: среднее, минимум и максимум энергии)
+     * @param file файл
+     * @param minimization минимизация
+     * @throws IOException ошибка записи
+     */
+    private static void writeHistory(Path file, Minimization minimization) throws IOException {
+        MetricSeries energy = minimization.getArrayEnergy();
+        MetricSeries coefficientForAngle = minimization.getArrayCoefficientForAngel();
+        MetricSeries coefficientForZ = minimization.getArrayCoefficientForZ();
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("step,energy,energy_min,energy_max,k_angle,k_z");
+            writer.newLine();
+            for (int b = 0; b < energy.getBucketCount(); b++) {
+                writer.write(energy.getStep(b) + "," + energy.getMean(b) + "," + energy.getMin(b) + "," + energy.getMax(b)
+                        + "," + coefficientForAngle.getMean(b) + "," + coefficientForZ.getMean(b));
+                writer.newLine();
+            }
+        }
+    }
+}
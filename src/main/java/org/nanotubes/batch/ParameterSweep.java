@@ -0,0 +1,364 @@
+package org.nanotubes.batch;
+
+import org.nanotubes.generation.Generation;
+import org.nanotubes.generation.Geom.ParticleSystem;
+import org.nanotubes.generation.Geom.Tube;
+import org.nanotubes.minimization.MetricSeries;
+import org.nanotubes.minimization.Minimization;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Класс выполняющий серию независимых расчетов (генерация и минимизация) для списка конфигураций на пуле потоков с перехватом работы.
+ * Результаты дописываются в таблицу после каждого расчета, поэтому прерванная серия продолжается с незавершенных конфигураций
+ */
+public class ParameterSweep {
+    /**
+     * Подсказка по параметрам командной строки
+     */
+    private static final String USAGE = "usage: ParameterSweep (--list FILE | --radius R1,R2 --height H1,H2 --particles N1,N2"
+            + " [--degree 2] [--seeds 1]) [--threads T] [--timeout SECONDS] [--cutoff C] [--results sweep.csv] [--output DIR]";
+    /**
+     * Заголовок таблицы результатов
+     */
+    private static final String HEADER = "radius,height,particles,degree,seed,cutoff,status,steps,energy,time_ms,message";
+    /**
+     * Количество столбцов таблицы результатов
+     */
+    private static final int COLUMNS = HEADER.split(",").length;
+    /**
+     * Количество столбцов ключа расчета (конфигурация и радиус обрезки)
+     */
+    private static final int KEY_COLUMNS = 6;
+    /**
+     * Состояние расчета, завершившегося без ошибок
+     */
+    private static final String OK = "ok";
+    /**
+     * Состояние расчета, остановленного по истечении времени (при повторном запуске выполняется заново)
+     */
+    private static final String TIMEOUT = "timeout";
+    /**
+     * Состояние расчета, завершившегося с ошибкой
+     */
+    private static final String FAILED = "failed";
+
+    /**
+     * Конфигурации расчетов
+     */
+    private final List<TubeConfiguration> configurations;
+    /**
+     * Количество одновременно выполняемых расчетов
+     */
+    private final int parallelism;
+    /**
+     * Ограничение времени одного расчета в секундах (0 - без ограничения)
+     */
+    private final long timeout;
+    /**
+     * Таблица результатов
+     */
+    private final Path results;
+    /**
+     * Радиус обрезки взаимодействия (0 - учитываются все пары частиц)
+     */
+    private double cutoff;
+    /**
+     * Каталог для координат частиц каждого расчета (null - координаты не записываются)
+     */
+    private Path output;
+
+    /**
+     * Конструктор класса создающий серию расчетов
+     * @param configurations конфигурации расчетов
+     * @param parallelism количество одновременно выполняемых расчетов
+     * @param timeout ограничение времени одного расчета в секундах (0 - без ограничения)
+     * @param results таблица результатов
+     */
+    public ParameterSweep(List<TubeConfiguration> configurations, int parallelism, long timeout, Path results) {
+        this.configurations = configurations;
+        this.parallelism = parallelism;
+        this.timeout = timeout;
+        this.results = results;
+    }
+
+    /**
+     * Метод запускающий серию расчетов из командной строки
+     * @param args параметры командной строки
+     */
+    public static void main(String[] args) {
+        try {
+            ParameterSweep sweep = parse(args);
+            sweep.run();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("sweep failed: " + e.getMessage());
+            System.exit(1);
+        } catch (RuntimeException e) {
+            System.err.println("sweep failed: " + e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Метод создающий серию расчетов по параметрам командной строки
+     * @param args параметры командной строки
+     * @return серия расчетов
+     * @throws IOException ошибка чтения списка конфигураций
+     */
+    private static ParameterSweep parse(String[] args) throws IOException {
+        List<TubeConfiguration> configurations = null;
+        double[] radii = null, heights = null;
+        int[] numbersOfParticle = null;
+        int[] degrees = {2};
+        long[] seeds = {1};
+        int threads = Runtime.getRuntime().availableProcessors();
+        long timeout = 0;
+        double cutoff = 0;
+        Path results = Paths.get("sweep.csv");
+        Path output = null;
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("missing value for " + args[i]);
+            }
+            String value = args[i + 1];
+            try {
+                switch (args[i]) {
+                    case "--list" -> configurations = readList(Paths.get(value));
+                    case "--radius" -> radii = Arrays.stream(value.split(",")).mapToDouble(Double::parseDouble).toArray();
+                    case "--height" -> heights = Arrays.stream(value.split(",")).mapToDouble(Double::parseDouble).toArray();
+                    case "--particles" -> numbersOfParticle = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                    case "--degree" -> degrees = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                    case "--seeds" -> seeds = Arrays.stream(value.split(",")).mapToLong(Long::parseLong).toArray();
+                    case "--threads" -> threads = Integer.parseInt(value);
+                    case "--timeout" -> timeout = Long.parseLong(value);
+                    case "--cutoff" -> cutoff = Double.parseDouble(value);
+                    case "--results" -> results = Paths.get(value);
+                    case "--output" -> output = Paths.get(value);
+                    default -> throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("bad value for " + args[i] + ": " + value);
+            }
+        }
+        if (configurations == null) {
+            if (radii == null || heights == null || numbersOfParticle == null) {
+                throw new IllegalArgumentException("either --list or --radius, --height and --particles are required");
+            }
+            configurations = TubeConfiguration.grid(radii, heights, numbersOfParticle, degrees, seeds);
+        }
+        ParameterSweep sweep = new ParameterSweep(configurations, threads, timeout, results);
+        sweep.setCutoff(cutoff);
+        sweep.setOutput(output);
+        return sweep;
+    }
+
+    /**
+     * Метод читающий список конфигураций: по одной в строке, пустые строки и строки с # пропускаются
+     * @param file файл со списком конфигураций
+     * @return список конфигураций
+     * @throws IOException ошибка чтения
+     */
+    private static List<TubeConfiguration> readList(Path file) throws IOException {
+        List<TubeConfiguration> configurations = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (!line.isBlank() && !line.startsWith("#")) {
+                configurations.add(TubeConfiguration.parse(line));
+            }
+        }
+        return configurations;
+    }
+
+    /**
+     * Метод выполняющий все конфигурации, которых еще нет в таблице результатов
+     * @throws IOException ошибка чтения или записи таблицы результатов
+     */
+    public void run() throws IOException {
+        Set<String> completed = readCompleted();
+        List<TubeConfiguration> remaining = new ArrayList<>();
+        for (TubeConfiguration configuration : configurations) {
+            if (!completed.contains(key(configuration))) {
+                remaining.add(configuration);
+            }
+        }
+        System.out.println("sweep: " + configurations.size() + " configurations, "
+                + (configurations.size() - remaining.size()) + " already completed, " + remaining.size() + " to run");
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sweep-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger done = new AtomicInteger();
+        try (BufferedWriter writer = openResults()) {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (TubeConfiguration configuration : remaining) {
+                tasks.add(pool.submit(() -> {
+                    String row = runConfiguration(configuration, watchdog);
+                    synchronized (writer) {
+                        try {
+                            writer.write(row);
+                            writer.newLine();
+                            writer.flush();
+                        } catch (IOException e) {
+                            throw new IllegalStateException("cannot write " + results, e);
+                        }
+                    }
+                    System.out.println("[" + done.incrementAndGet() + "/" + remaining.size() + "] " + row);
+                }));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        } finally {
+            pool.shutdown();
+            watchdog.shutdownNow();
+        }
+    }
+
+    /**
+     * Метод выполняющий один расчет
+     * @param configuration конфигурация расчета
+     * @param watchdog планировщик, останавливающий расчет по истечении времени
+     * @return строка таблицы результатов
+     */
+    private String runConfiguration(TubeConfiguration configuration, ScheduledExecutorService watchdog) {
+        String key = key(configuration);
+        long start = System.nanoTime();
+        try {
+            Tube tube = new Tube(configuration.getRadius(), configuration.getHeight());
+            ParticleSystem system = new Generation(tube, configuration.getNumberOfParticle(),
+                    configuration.getSeed()).ParticleSystemGeneration();
+            // ограничение времени отсчитывается от начала расчета, генерация в него входит
+            long remaining = timeout > 0 ? TimeUnit.SECONDS.toNanos(timeout) - (System.nanoTime() - start) : 0;
+            if (timeout > 0 && remaining <= 0) {
+                return key + "," + TIMEOUT + ",0,NaN," + (System.nanoTime() - start) / 1_000_000
+                        + ",generation exceeded the timeout";
+            }
+            Minimization minimization = new Minimization(system, configuration.getDegree(), tube);
+            if (cutoff > 0) {
+                minimization.setCutoff(cutoff);
+            }
+            ScheduledFuture<?> stop = timeout > 0
+                    ? watchdog.schedule(minimization::cancel, remaining, TimeUnit.NANOSECONDS) : null;
+            minimization.minimizationOfSystem();
+            if (stop != null) {
+                stop.cancel(false);
+            }
+            if (output != null) {
+                Path directory = output.resolve(key.replace(',', '_'));
+                Files.createDirectories(directory);
+                NanoTubeBatch.writeParticles(directory.resolve("particles.csv"), system);
+            }
+            MetricSeries energy = minimization.getArrayEnergy();
+            return key + "," + (minimization.isCancelled() ? TIMEOUT : OK) + "," + (energy.size() - 1)
+                    + "," + energy.getLast() + "," + (System.nanoTime() - start) / 1_000_000 + ",";
+        } catch (Exception e) {
+            System.err.println("configuration " + key + " failed: " + e);
+            return key + "," + FAILED + ",0,NaN," + (System.nanoTime() - start) / 1_000_000 + "," + message(e);
+        }
+    }
+
+    /**
+     * Метод возвращающий ключ расчета в таблице результатов: конфигурация и радиус обрезки,
+     * так как одна конфигурация с разной обрезкой дает разные результаты
+     * @param configuration конфигурация расчета
+     * @return ключ расчета
+     */
+    private String key(TubeConfiguration configuration) {
+        return configuration.key() + "," + cutoff;
+    }
+
+    /**
+     * Метод возвращающий описание ошибки для таблицы результатов (запятые и переводы строк заменяются,
+     * чтобы описание занимало один столбец)
+     * @param e ошибка
+     * @return описание ошибки
+     */
+    private static String message(Exception e) {
+        return e.toString().replace(',', ';').replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Метод возвращающий ключи расчетов, уже записанных в таблицу результатов с состоянием ok
+     * (остановленные по времени, завершившиеся с ошибкой и оборванные строки выполняются заново)
+     * @return ключи завершенных конфигураций
+     * @throws IOException ошибка чтения или таблица с другим заголовком
+     */
+    private Set<String> readCompleted() throws IOException {
+        Set<String> completed = new HashSet<>();
+        if (!Files.exists(results)) {
+            return completed;
+        }
+        List<String> lines = Files.readAllLines(results, StandardCharsets.UTF_8);
+        if (!lines.isEmpty() && !lines.get(0).equals(HEADER)) {
+            throw new IOException(results + " has a different header, expected " + HEADER);
+        }
+        for (String line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+            String[] values = line.split(",", -1);
+            if (values.length == COLUMNS && values[KEY_COLUMNS].equals(OK)) {
+                completed.add(String.join(",", Arrays.copyOf(values, KEY_COLUMNS)));
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Метод открывающий таблицу результатов для дописывания (заголовок записывается в новую таблицу).
+     * Строка, оборванная при аварийном завершении, закрывается переводом строки
+     * @return поток записи
+     * @throws IOException ошибка записи
+     */
+    private BufferedWriter openResults() throws IOException {
+        boolean exists = Files.exists(results) && Files.size(results) > 0;
+        boolean broken = exists && !Files.readString(results, StandardCharsets.UTF_8).endsWith(System.lineSeparator());
+        BufferedWriter writer = Files.newBufferedWriter(results, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (!exists) {
+            writer.write(HEADER);
+            writer.newLine();
+        } else if (broken) {
+            writer.newLine();
+        }
+        writer.flush();
+        return writer;
+    }
+
+    /**
+     * Метод задающий радиус обрезки взаимодействия для всех расчетов
+     * @param cutoff радиус обрезки (0 - учитываются все пары частиц)
+     */
+    public void setCutoff(double cutoff) {
+        this.cutoff = cutoff;
+    }
+
+    /**
+     * Метод задающий каталог для координат частиц каждого расчета
+     * @param output каталог (null - координаты не записываются)
+     */
+    public void setOutput(Path output) {
+        this.output = output;
+    }
+}
@@ -0,0 +1,139 @@
+package org.nanotubes.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Класс описывающий одну конфигурацию расчета: параметры цилиндра, количество частиц, степень и начальное значение генератора
+ */
+public class TubeConfiguration {
+    /**
+     * Радиус цилиндра
+     */
+    private final double radius;
+    /**
+     * Высота цилиндра
+     */
+    private final double height;
+    /**
+     * Количество частиц
+     */
+    private final int numberOfParticle;
+    /**
+     * Степень (из теории)
+     */
+    private final int degree;
+    /**
+     * Начальное значение генератора случайных чисел
+     */
+    private final long seed;
+
+    /**
+     * Конструктор класса создающий конфигурацию расчета
+     * @param radius радиус цилиндра
+     * @param height высота цилиндра
+     * @param numberOfParticle количество частиц
+     * @param degree степень (из теории)
+     * @param seed начальное значение генератора случайных чисел
+     */
+    public TubeConfiguration(double radius, double height, int numberOfParticle, int degree, long seed) {
+        this.radius = radius;
+        this.height = height;
+        this.numberOfParticle = numberOfParticle;
+        this.degree = degree;
+        this.seed = seed;
+    }
+
+    /**
+     * Метод создающий все сочетания заданных значений параметров (сетку конфигураций)
+     * @param radii радиусы цилиндра
+     * @param heights высоты цилиндра
+     * @param numbersOfParticle количества частиц
+     * @param degrees степени
+     * @param seeds начальные значения генератора случайных чисел
+     * @return список конфигураций
+     */
+    public static List<TubeConfiguration> grid(double[] radii, double[] heights, int[] numbersOfParticle,
+                                               int[] degrees, long[] seeds) {
+        List<TubeConfiguration> configurations = new ArrayList<>();
+        for (double radius : radii) {
+            for (double height : heights) {
+                for (int numberOfParticle : numbersOfParticle) {
+                    for (int degree : degrees) {
+                        for (long seed : seeds) {
+                            configurations.add(new TubeConfiguration(radius, height, numberOfParticle, degree, seed));
+                        }
+                    }
+                }
+            }
+        }
+        return configurations;
+    }
+
+    /**
+     * Метод создающий конфигурацию по строке "радиус,высота,количество частиц,степень,начальное значение"
+     * @param line строка
+     * @return конфигурация
+     */
+    public static TubeConfiguration parse(String line) {
+        String[] values = line.split(",");
+        if (values.length < 5) {
+            throw new IllegalArgumentException("expected radius,height,particles,degree,seed: " + line);
+        }
+        return new TubeConfiguration(Double.parseDouble(values[0].trim()), Double.parseDouble(values[1].trim()),
+                Integer.parseInt(values[2].trim()), Integer.parseInt(values[3].trim()), Long.parseLong(values[4].trim()));
+    }
+
+    /**
+     * Метод возвращающий ключ конфигурации, по которому она находится в таблице результатов
+     * @return строка "радиус,высота,количество частиц,степень,начальное значение"
+     */
+    public String key() {
+        return radius + "," + height + "," + numberOfParticle + "," + degree + "," + seed;
+    }
+
+    /**
+     * Метод возвращающий радиус цилиндра
+     * @return радиус цилиндра
+     */
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * Метод возвращающий высоту цилиндра
+     * @return высота цилиндра
+     */
+    public double getHeight() {
+        return height;
+    }
+
+    /**
+     * Метод возвращающий количество частиц
+     * @return количество частиц
+     */
+    public int getNumberOfParticle() {
+        return numberOfParticle;
+    }
+
+    /**
+     * Метод возвращающий степень (из теории)
+     * @return степень (из теории)
+     */
+    public int getDegree() {
+        return degree;
+    }
+
+    /**
+     * Метод возвращающий начальное значение генератора случайных чисел
+     * @return начальное значение генератора случайных чисел
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public String toString() {
+        return key();
+    }
+}
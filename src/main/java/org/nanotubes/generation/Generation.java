@@ -4,12 +4,12 @@ import javafx.collections.ObservableList;
 import javafx.scene.paint.Color;
 
 import org.nanotubes.generation.Geom.Tube;
+import org.nanotubes.generation.PoissonDisk.ParallelPoissonDiskIn2D;
 import org.nanotubes.generation.PoissonDisk.PoissonDiskIn2D;
-import org.nanotubes.generation.PoissonDisk.Vector2DDouble;
 import org.nanotubes.generation.Geom.Particle;
+import org.nanotubes.generation.Geom.ParticleSystem;
 
-import java.util.Collections;
-import java.util.List;
+import java.util.SplittableRandom;
 
 import static javafx.scene.paint.Color.*;
 
@@ -23,6 +23,10 @@ public class Generation {
      */
     private static final Color[] COLORS = new Color[] { RED, YELLOW, GREEN,
             BROWN, BLUE, PINK, BLACK };
+    /**
+     * Количество частиц, начиная с которого точки создаются параллельно по плиткам (ParallelPoissonDiskIn2D)
+     */
+    private static final int PARALLEL_GENERATION = 50000;
     /**
      * Цилиндр
      */
@@ -35,14 +39,29 @@ public class Generation {
      * Радиус частицы
      */
     private final double radius;
+    /**
+     * Начальное значение генератора случайных чисел, по которому генерация повторяется точно
+     */
+    private final long seed;
 
     /**
-     * Конструктор класса Ganeration создающий объект Ganeration
+     * Конструктор класса Ganeration создающий объект Ganeration со случайным начальным значением генератора (см. getSeed)
      * @param tube параметры цилиндра
      * @param numberOfParticle количество частиц
      */
     public Generation(Tube tube, int numberOfParticle) {
+        this(tube, numberOfParticle, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Конструктор класса Ganeration создающий объект Ganeration с воспроизводимой генерацией
+     * @param tube параметры цилиндра
+     * @param numberOfParticle количество частиц
+     * @param seed начальное значение генератора случайных чисел
+     */
+    public Generation(Tube tube, int numberOfParticle, long seed) {
         this.tube = tube;
+        this.seed = seed;
         this.numberOfParticle = numberOfParticle;
         radius = Math.sqrt(tube.getRadius()*tube.getHeight()/(2*numberOfParticle));
     }
@@ -53,16 +72,56 @@ public class Generation {
      */
     public ObservableList<Particle> ParticlesGeneration(ObservableList<Particle> particlesList) {
         particlesList.clear();
-        List <Vector2DDouble> list = new PoissonDiskIn2D(0,0,tube.getRadius()*2*Math.PI-2*radius,
-                tube.getHeight(),radius*2, numberOfParticle).ListOfPointsPoissonDisk();
-        Collections.shuffle(list);
+        ParticleSystem system = ParticleSystemGeneration();
 
         for (int i = 0; i < numberOfParticle; i++) {
-            Particle particle = new Particle(list.get(i).getX()/tube.getRadius(), tube.getRadius(),
-                    list.get(i).getY()-tube.getHeight()/2, radius, COLORS[i % COLORS.length]);
+            Particle particle = new Particle(system.getPhi(i), system.getRho(i), system.getZ(i),
+                    system.getRadius(i), COLORS[i % COLORS.length]);
             particlesList.add(particle);
         }
 
         return particlesList;
     }
+
+    /**
+     * Метод создающий псевдослучайным образом (расспределение Пуассона) заданное количество частиц без графических объектов.
+     * Каждый вызов использует собственный генератор, созданный по начальному значению, поэтому повторный вызов дает те же координаты,
+     * а одновременные генерации в разных потоках не делят общий генератор
+     * @return координаты частиц
+     */
+    public ParticleSystem ParticleSystemGeneration() {
+        // развертка периодична по phi, поэтому ширина поля равна длине окружности цилиндра без зазора у линии склейки
+        double[] x, y;
+        if (numberOfParticle < PARALLEL_GENERATION) {
+            PoissonDiskIn2D sampler = new PoissonDiskIn2D(0,0,tube.getRadius()*2*Math.PI,
+                    tube.getHeight(),radius*2, PoissonDiskIn2D.DEFAULT_POINTS_TO_GENERATE, new SplittableRandom(seed), true);
+            sampler.sample(numberOfParticle);
+            x = sampler.getPointsX();
+            y = sampler.getPointsY();
+        } else {
+            ParallelPoissonDiskIn2D sampler = new ParallelPoissonDiskIn2D(0,0,tube.getRadius()*2*Math.PI,
+                    tube.getHeight(),radius*2, PoissonDiskIn2D.DEFAULT_POINTS_TO_GENERATE, new SplittableRandom(seed), true);
+            sampler.sample(numberOfParticle);
+            x = sampler.getPointsX();
+            y = sampler.getPointsY();
+        }
+        if (x.length < numberOfParticle) {
+            throw new IllegalStateException("only " + x.length + " of " + numberOfParticle + " particles fit on the tube");
+        }
+
+        ParticleSystem system = new ParticleSystem(numberOfParticle);
+        for (int i = 0; i < numberOfParticle; i++) {
+            system.set(i, x[i]/tube.getRadius(), tube.getRadius(), y[i]-tube.getHeight()/2, radius);
+        }
+
+        return system;
+    }
+
+    /**
+     * Метод возвращающий начальное значение генератора случайных чисел
+     * @return начальное значение генератора случайных чисел
+     */
+    public long getSeed() {
+        return seed;
+    }
 }
@@ -1,12 +1,11 @@
 package org.nanotubes.generation.Geom;
 
 import javafx.scene.paint.Color;
-import javafx.scene.paint.PhongMaterial;
-import javafx.scene.shape.Sphere;
 
 /**
  * Класс описывающий частицу
- * Радиус, форма, положение в цилиндрической системе координат
+ * Радиус, цвет, положение в цилиндрической системе координат.
+ * Графических объектов не содержит: узлы сцены для отображаемых частиц создает Mapping
  */
 public class Particle {
     /**
@@ -26,9 +25,8 @@ public class Particle {
      */
    private double z;
     /**
-     * Форма частицы
+     * Цвет частицы
      */
-   private final Sphere particle;
    private final Color color;
 
     /**
@@ -40,16 +38,11 @@ public class Particle {
      * @param color цвет частицы
      */
    public Particle(double phi, double rho, double z, double radius, Color color) {
-       this.particle = new Sphere(radius);
        this.radius = radius;
        this.phi = phi;
        this.rho = rho;
        this.z = z;
        this.color = color;
-       particle.setMaterial(new PhongMaterial(color));
-       particle.setTranslateX(rho * Math.cos(phi));
-       particle.setTranslateY(z);
-       particle.setTranslateZ(rho * Math.sin(phi));
    }
 
     /**
@@ -105,8 +98,6 @@ public class Particle {
      */
     public void setPhi(double phi) {
         this.phi = phi;
-        particle.setTranslateX(rho * Math.cos(phi));
-        particle.setTranslateZ(rho * Math.sin(phi));
     }
 
     /**
@@ -123,8 +114,6 @@ public class Particle {
      */
     public void setRho(double rho) {
         this.rho = rho;
-        particle.setTranslateX(rho * Math.cos(phi));
-        particle.setTranslateZ(rho * Math.sin(phi));
     }
 
     /**
@@ -141,16 +130,11 @@ public class Particle {
      */
     public void setZ(double z) {
         this.z = z;
-        particle.setTranslateY(z);
     }
 
     /**
-     * Метод возвращающий частицу
-     * @return частица
+     * Метод возвращающий цвет частицы
+     * @return цвет частицы
      */
-    public Sphere getParticle() {
-        return particle;
-    }
-
     public Color getColor() { return color; }
 }
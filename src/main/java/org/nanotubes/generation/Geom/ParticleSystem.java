@@ -0,0 +1,192 @@
+package org.nanotubes.generation.Geom;
+
+import java.util.List;
+
+/**
+ * Класс хранящий координаты системы частиц в непрерывных массивах (структура массивов)
+ * Не зависит от графических объектов JavaFX и используется при расчётах
+ */
+public class ParticleSystem {
+    /**
+     * Количество частиц
+     */
+    private final int numberOfParticle;
+    /**
+     * Координаты phi частиц в цилиндрической системе
+     */
+    private final double[] phi;
+    /**
+     * Координаты rho частиц в цилиндрической системе
+     */
+    private final double[] rho;
+    /**
+     * Координаты z частиц в цилиндрической системе
+     */
+    private final double[] z;
+    /**
+     * Радиусы частиц
+     */
+    private final double[] radius;
+
+    /**
+     * Конструктор класса создающий систему из заданного количества частиц с нулевыми координатами
+     * @param numberOfParticle количество частиц
+     */
+    public ParticleSystem(int numberOfParticle) {
+        this.numberOfParticle = numberOfParticle;
+        phi = new double[numberOfParticle];
+        rho = new double[numberOfParticle];
+        z = new double[numberOfParticle];
+        radius = new double[numberOfParticle];
+    }
+
+    /**
+     * Метод создающий систему частиц по списку частиц
+     * @param particles частицы
+     * @return система частиц с теми же координатами
+     */
+    public static ParticleSystem of(List<Particle> particles) {
+        ParticleSystem system = new ParticleSystem(particles.size());
+        for (int i = 0; i < system.numberOfParticle; i++) {
+            Particle particle = particles.get(i);
+            system.set(i, particle.getPhi(), particle.getRho(), particle.getZ(), particle.getRadius());
+        }
+        return system;
+    }
+
+    /**
+     * Метод переносящий координаты системы в список частиц (например, перед отображением)
+     * @param particles частицы, порядок которых совпадает с порядком частиц системы
+     */
+    public void syncTo(List<Particle> particles) {
+        for (int i = 0; i < numberOfParticle; i++) {
+            Particle particle = particles.get(i);
+            particle.setRho(rho[i]);
+            particle.setPhi(phi[i]);
+            particle.setZ(z[i]);
+        }
+    }
+
+    /**
+     * Метод изменяющий все координаты частицы
+     * @param i номер частицы
+     * @param phi координата phi в цилиндрической системе
+     * @param rho координата rho в цилиндрической системе
+     * @param z координата z в цилиндрической системе
+     * @param radius радиус частицы
+     */
+    public void set(int i, double phi, double rho, double z, double radius) {
+        this.phi[i] = phi;
+        this.rho[i] = rho;
+        this.z[i] = z;
+        this.radius[i] = radius;
+    }
+
+    /**
+     * Метод изменяющий положение частицы на поверхности цилиндра
+     * @param i номер частицы
+     * @param phi координата phi в цилиндрической системе
+     * @param z координата z в цилиндрической системе
+     */
+    public void move(int i, double phi, double z) {
+        this.phi[i] = phi;
+        this.z[i] = z;
+    }
+
+    /**
+     * Метод возвращающий расстояние между точкой с заданными координатами и частицей в плоскости развертки цилиндра
+     * @param phi координата phi точки
+     * @param rho координата rho точки
+     * @param z координата z точки
+     * @param j номер частицы
+     * @return расстояние между точкой и частицей
+     */
+    public double distance(double phi, double rho, double z, int j) {
+        double x = phi * rho - this.phi[j] * this.rho[j];
+        double y = z - this.z[j];
+        return Math.sqrt(x * x + y * y);
+    }
+
+    /**
+     * Метод возвращающий расстояние между точкой с заданными координатами и частицей в плоскости развертки цилиндра через линию склейки 2pi
+     * (повторяет Particle.distanceWith2Pi)
+     * @param phi координата phi точки
+     * @param rho координата rho точки
+     * @param z координата z точки
+     * @param j номер частицы
+     * @return расстояние между точкой и частицей
+     */
+    public double distanceWith2Pi(double phi, double rho, double z, int j) {
+        double x = 2 * Math.PI - Math.abs(phi * rho - this.phi[j] * this.rho[j]);
+        double y = z - this.z[j];
+        return Math.sqrt(x * x + y * y);
+    }
+
+    /**
+     * Метод возвращающий количество частиц
+     * @return количество частиц
+     */
+    public int size() {
+        return numberOfParticle;
+    }
+
+    /**
+     * Метод возвращающий значение координаты phi
+     * @param i номер частицы
+     * @return координата phi в цилиндрической системе
+     */
+    public double getPhi(int i) {
+        return phi[i];
+    }
+
+    /**
+     * Метод возвращающий значение координаты rho
+     * @param i номер частицы
+     * @return координата rho в цилиндрической системе
+     */
+    public double getRho(int i) {
+        return rho[i];
+    }
+
+    /**
+     * Метод возвращающий значение координаты z
+     * @param i номер частицы
+     * @return координата z в цилиндрической системе
+     */
+    public double getZ(int i) {
+        return z[i];
+    }
+
+    /**
+     * Метод возвращающий радиус частицы
+     * @param i номер частицы
+     * @return радиус частицы
+     */
+    public double getRadius(int i) {
+        return radius[i];
+    }
+
+    /**
+     * Метод возвращающий массив координат phi для векторных вычислений (массив не копируется и не должен изменяться)
+     * @return координаты phi всех частиц
+     */
+    public double[] getPhiArray() {
+        return phi;
+    }
+
+    /**
+     * Метод возвращающий массив координат rho для векторных вычислений (массив не копируется и не должен изменяться)
+     * @return координаты rho всех частиц
+     */
+    public double[] getRhoArray() {
+        return rho;
+    }
+
+    /**
+     * Метод возвращающий массив координат z для векторных вычислений (массив не копируется и не должен изменяться)
+     * @return координаты z всех частиц
+     */
+    public double[] getZArray() {
+        return z;
+    }
+}
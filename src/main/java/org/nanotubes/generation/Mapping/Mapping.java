@@ -6,6 +6,10 @@ import javafx.scene.paint.Color;
 import org.nanotubes.generation.Geom.Particle;
 import org.nanotubes.generation.Geom.Tube;
 
+/**
+ * Класс отображающий частицы: создает 3D-объекты при первом отображении и переносит в них координаты частиц.
+ * Частицы рисуются сетками ParticleMesh, по одной на цвет
+ */
 public class Mapping {
     /**
      * Частицы, которые необходимо отобразить
@@ -23,6 +27,18 @@ public class Mapping {
      * Цилиндр
      */
     private final Tube tube;
+    /**
+     * 3D-объекты частиц (создаются при первом отображении)
+     */
+    private ParticleMesh mesh;
+    /**
+     * Режим уровня детализации и отсечения невидимых частиц
+     */
+    private boolean levelOfDetail;
+    /**
+     * Положение камеры и количество пикселей на единицу длины на единичном расстоянии от камеры
+     */
+    private double cameraX, cameraY, cameraZ, pixelsPerUnit;
 
     public Mapping(int numberOfParticle, Group group, Tube tube, ObservableList<Particle> list) {
         this.numberOfParticle = numberOfParticle;
@@ -31,10 +47,52 @@ public class Mapping {
         this.tube = tube;
     }
     public void MappingParticle() {
+        if (mesh == null) {
+            mesh = new ParticleMesh(list.subList(0, numberOfParticle));
+            mesh.setCamera(cameraX, cameraY, cameraZ, pixelsPerUnit);
+            mesh.setLevelOfDetail(levelOfDetail);
+        } else {
+            update();
+        }
         group.getChildren().clear();
         group.getChildren().add(new TubeView(tube, Color.YELLOW).asNode());
-        for (int i = 0; i < numberOfParticle; i++) {
-            group.getChildren().add(list.get(i).getParticle());
+        group.getChildren().addAll(mesh.getNodes());
+    }
+
+    /**
+     * Метод переносящий текущие координаты частиц в их 3D-объекты (вызывается в потоке JavaFX)
+     */
+    public void update() {
+        if (mesh != null) {
+            mesh.update();
+        }
+    }
+
+    /**
+     * Метод включающий или выключающий режим уровня детализации и отсечения частиц на обратной стороне цилиндра
+     * @param levelOfDetail истина - режим включен
+     */
+    public void setLevelOfDetail(boolean levelOfDetail) {
+        this.levelOfDetail = levelOfDetail;
+        if (mesh != null) {
+            mesh.setLevelOfDetail(levelOfDetail);
+        }
+    }
+
+    /**
+     * Метод задающий положение камеры для режима уровня детализации
+     * @param x координата x камеры
+     * @param y координата y камеры
+     * @param z координата z камеры
+     * @param pixelsPerUnit количество пикселей на единицу длины на единичном расстоянии от камеры
+     */
+    public void setCamera(double x, double y, double z, double pixelsPerUnit) {
+        cameraX = x;
+        cameraY = y;
+        cameraZ = z;
+        this.pixelsPerUnit = pixelsPerUnit;
+        if (mesh != null) {
+            mesh.setCamera(x, y, z, pixelsPerUnit);
         }
     }
     public void Print() {
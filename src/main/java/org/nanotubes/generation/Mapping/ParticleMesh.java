@@ -0,0 +1,269 @@
+package org.nanotubes.generation.Mapping;
+
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import org.nanotubes.generation.Geom.Particle;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Класс отображающий все частицы несколькими 3D-объектами: частицы одного цвета объединяются в одну сетку треугольников,
+ * каждая частица изображается многогранником вместо сферы. Количество узлов сцены равно количеству цветов,
+ * а не количеству частиц, при изменении координат переписываются только координаты вершин существующих сеток.
+ * В режиме уровня детализации (setLevelOfDetail) частица, видимая крупнее DETAIL_PIXELS пикселей, изображается
+ * икосаэдром, остальные - октаэдром, а частицы на обратной стороне непрозрачного цилиндра не рисуются вовсе.
+ * Без этого режима все частицы рисуются октаэдрами
+ */
+public class ParticleMesh {
+    /**
+     * Смещения вершин октаэдра единичного радиуса
+     */
+    private static final float[] OCTAHEDRON_VERTICES = {
+            1, 0, 0,  -1, 0, 0,  0, 1, 0,  0, -1, 0,  0, 0, 1,  0, 0, -1
+    };
+    /**
+     * Грани октаэдра (номера вершин против часовой стрелки при взгляде снаружи)
+     */
+    private static final int[] OCTAHEDRON_FACES = {
+            0, 2, 4,  4, 2, 1,  1, 2, 5,  5, 2, 0,
+            0, 4, 3,  4, 1, 3,  1, 5, 3,  5, 0, 3
+    };
+    /**
+     * Смещения вершин икосаэдра единичного радиуса
+     */
+    private static final float[] ICOSAHEDRON_VERTICES;
+    /**
+     * Грани икосаэдра (номера вершин против часовой стрелки при взгляде снаружи)
+     */
+    private static final int[] ICOSAHEDRON_FACES = {
+            0, 11, 5,  0, 5, 1,  0, 1, 7,  0, 7, 10,  0, 10, 11,
+            1, 5, 9,  5, 11, 4,  11, 10, 2,  10, 7, 6,  7, 1, 8,
+            3, 9, 4,  3, 4, 2,  3, 2, 6,  3, 6, 8,  3, 8, 9,
+            4, 9, 5,  2, 4, 11,  6, 2, 10,  8, 6, 7,  9, 8, 1
+    };
+
+    static {
+        float a = 0.5257311f, b = 0.8506508f;
+        ICOSAHEDRON_VERTICES = new float[] {
+                -a, b, 0,  a, b, 0,  -a, -b, 0,  a, -b, 0,
+                0, -a, b,  0, a, b,  0, -a, -b,  0, a, -b,
+                b, 0, -a,  b, 0, a,  -b, 0, -a,  -b, 0, a
+        };
+    }
+
+    /**
+     * Количество вершин, отведенных в сетке одной частице (вершины самого подробного многогранника)
+     */
+    private static final int VERTICES_PER_PARTICLE = ICOSAHEDRON_VERTICES.length / 3;
+    /**
+     * Уровни детализации частицы: не рисуется, октаэдр, икосаэдр
+     */
+    private static final byte HIDDEN = 0, LOW = 1, HIGH = 2;
+    /**
+     * Видимый радиус частицы в пикселях, начиная с которого частица рисуется икосаэдром
+     */
+    private static final double DETAIL_PIXELS = 4;
+
+    /**
+     * Отображаемые частицы
+     */
+    private final List<Particle> particles;
+    /**
+     * Сетки частиц по цветам
+     */
+    private final List<Batch> batches = new ArrayList<>();
+    /**
+     * Режим уровня детализации и отсечения невидимых частиц
+     */
+    private boolean levelOfDetail;
+    /**
+     * Положение камеры
+     */
+    private double cameraX, cameraY, cameraZ;
+    /**
+     * Количество пикселей на единицу длины на единичном расстоянии от камеры
+     */
+    private double pixelsPerUnit;
+
+    /**
+     * Сетка частиц одного цвета
+     */
+    private static class Batch {
+        /**
+         * Номера частиц сетки
+         */
+        private final int[] particles;
+        /**
+         * Текущие уровни детализации частиц сетки
+         */
+        private final byte[] levels;
+        /**
+         * Сетка треугольников
+         */
+        private final TriangleMesh mesh = new TriangleMesh();
+        /**
+         * 3D-объект сетки
+         */
+        private final MeshView view = new MeshView(mesh);
+        /**
+         * Координаты вершин сетки
+         */
+        private final float[] points;
+        /**
+         * Грани сетки (номер вершины и номер текстурной координаты)
+         */
+        private final int[] faces;
+
+        private Batch(int[] particles, Color color) {
+            this.particles = particles;
+            levels = new byte[particles.length];
+            points = new float[particles.length * VERTICES_PER_PARTICLE * 3];
+            faces = new int[particles.length * ICOSAHEDRON_FACES.length * 2];
+            mesh.getTexCoords().addAll(0, 0);
+            mesh.getPoints().setAll(points);
+            view.setMaterial(new PhongMaterial(color));
+        }
+
+        /**
+         * Метод заново составляющий грани сетки по уровням детализации частиц
+         */
+        private void buildFaces() {
+            int f = 0;
+            for (int p = 0; p < particles.length; p++) {
+                if (levels[p] == HIDDEN) {
+                    continue;
+                }
+                int base = p * VERTICES_PER_PARTICLE;
+                for (int vertex : levels[p] == HIGH ? ICOSAHEDRON_FACES : OCTAHEDRON_FACES) {
+                    faces[f++] = base + vertex;
+                    faces[f++] = 0;
+                }
+            }
+            mesh.getFaces().setAll(faces, 0, f);
+        }
+    }
+
+    /**
+     * Конструктор класса создающий сетки для заданных частиц
+     * @param particles частицы (список не копируется, метод update берет из него текущие координаты)
+     */
+    public ParticleMesh(List<Particle> particles) {
+        this.particles = particles;
+        Map<Color, List<Integer>> byColor = new LinkedHashMap<>();
+        for (int i = 0; i < particles.size(); i++) {
+            byColor.computeIfAbsent(particles.get(i).getColor(), color -> new ArrayList<>()).add(i);
+        }
+        byColor.forEach((color, indices) ->
+                batches.add(new Batch(indices.stream().mapToInt(Integer::intValue).toArray(), color)));
+        update();
+    }
+
+    /**
+     * Метод включающий или выключающий режим уровня детализации и отсечения частиц на обратной стороне цилиндра
+     * @param levelOfDetail истина - режим включен
+     */
+    public void setLevelOfDetail(boolean levelOfDetail) {
+        if (this.levelOfDetail != levelOfDetail) {
+            this.levelOfDetail = levelOfDetail;
+            update();
+        }
+    }
+
+    /**
+     * Метод задающий положение камеры для режима уровня детализации. Если камера не сдвинулась, ничего не пересчитывается
+     * @param x координата x камеры
+     * @param y координата y камеры
+     * @param z координата z камеры
+     * @param pixelsPerUnit количество пикселей на единицу длины на единичном расстоянии от камеры
+     *                      (высота области отображения, деленная на удвоенный тангенс половины угла обзора)
+     */
+    public void setCamera(double x, double y, double z, double pixelsPerUnit) {
+        if (x == cameraX && y == cameraY && z == cameraZ && pixelsPerUnit == this.pixelsPerUnit) {
+            return;
+        }
+        cameraX = x;
+        cameraY = y;
+        cameraZ = z;
+        this.pixelsPerUnit = pixelsPerUnit;
+        if (levelOfDetail) {
+            update();
+        }
+    }
+
+    /**
+     * Метод переносящий текущие координаты частиц в вершины сеток и пересчитывающий уровни детализации
+     * (вызывается в потоке JavaFX). Грани сетки составляются заново, только если уровень детализации какой-либо частицы изменился
+     */
+    public void update() {
+        for (Batch batch : batches) {
+            float[] points = batch.points;
+            boolean changed = false;
+            for (int p = 0; p < batch.particles.length; p++) {
+                Particle particle = particles.get(batch.particles[p]);
+                double rho = particle.getRho(), phi = particle.getPhi();
+                double cos = Math.cos(phi), sin = Math.sin(phi);
+                double x = rho * cos, y = particle.getZ(), z = rho * sin;
+                double radius = particle.getRadius();
+                byte level = levelOfDetail ? level(x, y, z, cos, sin, rho, radius) : LOW;
+                if (level != batch.levels[p]) {
+                    batch.levels[p] = level;
+                    changed = true;
+                }
+                if (level == HIDDEN) {
+                    continue;
+                }
+                float[] vertices = level == HIGH ? ICOSAHEDRON_VERTICES : OCTAHEDRON_VERTICES;
+                for (int v = 0, k = p * VERTICES_PER_PARTICLE * 3; v < vertices.length; v += 3) {
+                    points[k++] = (float) (x + radius * vertices[v]);
+                    points[k++] = (float) (y + radius * vertices[v + 1]);
+                    points[k++] = (float) (z + radius * vertices[v + 2]);
+                }
+            }
+            batch.mesh.getPoints().set(0, points, 0, points.length);
+            if (changed) {
+                batch.buildFaces();
+            }
+        }
+    }
+
+    /**
+     * Метод выбирающий уровень детализации частицы на боковой поверхности цилиндра.
+     * Частица скрыта, если направление на камеру отклоняется от внешней нормали поверхности больше чем на прямой угол
+     * с запасом на выступающую над поверхностью часть частицы
+     * @param x координата x центра частицы
+     * @param y координата y центра частицы
+     * @param z координата z центра частицы
+     * @param cos косинус угла phi частицы (компонента x нормали)
+     * @param sin синус угла phi частицы (компонента z нормали)
+     * @param rho координата rho частицы
+     * @param radius радиус частицы
+     * @return уровень детализации
+     */
+    private byte level(double x, double y, double z, double cos, double sin, double rho, double radius) {
+        double dx = cameraX - x, dy = cameraY - y, dz = cameraZ - z;
+        double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        double margin = rho > 0 ? Math.min(1, 2 * radius / rho) : 1;
+        if (cos * dx + sin * dz < -margin * distance) {
+            return HIDDEN;
+        }
+        return radius / distance * pixelsPerUnit >= DETAIL_PIXELS ? HIGH : LOW;
+    }
+
+    /**
+     * Метод возвращающий 3D-объекты сеток
+     * @return по одному 3D-объекту на цвет
+     */
+    public List<Node> getNodes() {
+        List<Node> nodes = new ArrayList<>();
+        for (Batch batch : batches) {
+            nodes.add(batch.view);
+        }
+        return nodes;
+    }
+}
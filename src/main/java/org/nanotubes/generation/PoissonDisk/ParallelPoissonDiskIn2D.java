@@ -0,0 +1,504 @@
+package org.nanotubes.generation.PoissonDisk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * Класс создающий точки распределения Пуассона на больших полях параллельно (без ограничения MAX_POINTS).
+ * Сетка разбивается на плитки со стороной не меньше минимального расстояния, соседние плитки окрашиваются в разные цвета,
+ * и плитки одного цвета заполняются одновременно на пуле потоков с перехватом работы: точка сравнивается только с точками
+ * своей и соседних плиток, а соседние плитки в эту фазу не изменяются. Каждая плитка заполняется своим генератором
+ * случайных чисел, поэтому результат не зависит от количества потоков
+ */
+public class ParallelPoissonDiskIn2D {
+    /**
+     * Сторона плитки в ячейках сетки
+     */
+    private final static int TILE_CELLS = 32;
+
+    /**
+     * Количество создающихся точек вокруг активной точки, в литературе k
+     */
+    private final int numberOfPoints;
+    /**
+     * Координаты левого нижнего угла поля
+     */
+    private final double x0, y0;
+    /**
+     * Ширина и высота поля
+     */
+    private final double width, height;
+    /**
+     * Минимальное растояние между частицами, в литературе - это радиус частицы r
+     */
+    private final double minDist;
+    /**
+     * Периодичность поля по оси абцисс (развертка цилиндра склеивается по линии 0/2pi)
+     */
+    private final boolean periodic;
+    /**
+     * Размеры ячейки: ширина подобрана так, чтобы в периодическом поле ширина поля делилась на нее нацело
+     */
+    private final double cellWidth, cellHeight;
+    /**
+     * Размеры сетки в ячейках
+     */
+    private final int gridWidth, gridHeight;
+    /**
+     * Количество соседних столбцов сетки с каждой стороны, в которых ищутся слишком близкие точки
+     */
+    private final int spanX;
+    /**
+     * Количество плиток по ширине и по высоте поля
+     */
+    private final int tilesX, tilesY;
+    /**
+     * Генератор случайных чисел, от которого отделяются генераторы плиток
+     */
+    private final SplittableRandom random;
+    /**
+     * Количество потоков (0 - общий пул)
+     */
+    private int parallelism;
+    /**
+     * Координаты точки в каждой ячейке сетки (NaN - ячейка пуста), ячейки идут по столбцам
+     */
+    private double[] cellX, cellY;
+    /**
+     * Количество точек в каждой плитке
+     */
+    private int[] tileCount;
+    /**
+     * Координаты отобранных точек
+     */
+    private double[] pointsX = new double[0], pointsY = new double[0];
+
+    /**
+     * Конструктор класса создающий новый обект ParallelPoissonDiskIn2D
+     * @param x0 координата двумерного пространства совподающая с осью абцисс декартовой системы координат в левом нижнем углу поля
+     * @param y0 координата двумерного пространства совподающая с осью оридинат декартовой системы координат в левом нижнем углу поля
+     * @param x1 координата двумерного пространства совподающая с осью абцисс декартовой системы координат в правом верхнем углу поля
+     * @param y1 координата двумерного пространства совподающая с осью ординат декартовой системы координат в правом верхнем углу поля
+     * @param minDist - минимальное расстояние между частицами равное радиусу точек
+     * @param numberOfPoints количество точек
+     * @param random генератор случайных чисел
+     * @param periodic периодичность поля по оси абцисс
+     */
+    public ParallelPoissonDiskIn2D(double x0, double y0, double x1, double y1, double minDist, int numberOfPoints,
+                                   SplittableRandom random, boolean periodic) {
+        this.x0 = x0;
+        this.y0 = y0;
+        width = x1 - x0;
+        height = y1 - y0;
+        this.minDist = minDist;
+        this.numberOfPoints = numberOfPoints;
+        this.random = random;
+        this.periodic = periodic;
+
+        cellHeight = minDist / sqrt(2);
+        if (periodic) {
+            gridWidth = Math.max(1, (int) Math.ceil(width / cellHeight));
+            cellWidth = width / gridWidth;
+        } else {
+            gridWidth = (int) (width / cellHeight) + 1;
+            cellWidth = cellHeight;
+        }
+        gridHeight = (int) (height / cellHeight) + 1;
+        if ((long) gridWidth * gridHeight > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("field of " + gridWidth + "x" + gridHeight + " cells is too large");
+        }
+        spanX = (int) Math.ceil(minDist / cellWidth);
+        // плитка не уже минимального расстояния, а остаток сетки присоединяется к последней плитке
+        int tileCells = Math.max(TILE_CELLS, spanX);
+        tilesX = Math.max(1, gridWidth / tileCells);
+        tilesY = Math.max(1, gridHeight / tileCells);
+    }
+
+    /**
+     * Метод задающий количество потоков
+     * @param parallelism количество потоков (0 - общий пул ForkJoinPool)
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Метод заполняющий все поле точками, соответствующими распределению Пуассона
+     * @return коллекцию точек
+     */
+    public List<Vector2DDouble> ListOfPointsPoissonDisk() {
+        sample(Integer.MAX_VALUE);
+        return pointList();
+    }
+
+    /**
+     * Метод создающий не больше заданного количества точек, соответствующих распределению Пуассона, равномерно по всему полю:
+     * каждой плитке достается доля точек, пропорциональная ее площади, а то, что в плитку не поместилось, добирается в других плитках
+     * @param count количество точек
+     * @return коллекцию точек (меньше count, если столько точек в поле не помещается)
+     */
+    public List<Vector2DDouble> ListOfPointsPoissonDisk(int count) {
+        sample(count);
+        return pointList();
+    }
+
+    /**
+     * Метод создающий точки без создания объектов Vector2DDouble (координаты возвращают getPointsX и getPointsY)
+     * @param count наибольшее количество точек (Integer.MAX_VALUE - заполнить все поле)
+     * @return количество созданных точек
+     */
+    public int sample(int count) {
+        int tiles = tilesX * tilesY;
+        int cells = gridWidth * gridHeight;
+        cellX = new double[cells];
+        cellY = new double[cells];
+        Arrays.fill(cellX, Double.NaN);
+        tileCount = new int[tiles];
+
+        int[] quota = new int[tiles];
+        SplittableRandom[] tileRandom = new SplittableRandom[tiles];
+        double covered = 0;
+        long assigned = 0;
+        for (int tile = 0; tile < tiles; tile++) {
+            tileRandom[tile] = random.split();
+            if (count == Integer.MAX_VALUE) {
+                quota[tile] = Integer.MAX_VALUE;
+            } else {
+                // накопленное округление: сумма долей плиток в точности равна count
+                covered += (right(tile) - left(tile)) * (top(tile) - bottom(tile));
+                long total = Math.round(count * Math.min(1, covered / (width * height)));
+                quota[tile] = (int) (total - assigned);
+                assigned = total;
+            }
+        }
+
+        // соседние плитки окрашены по-разному; при нечетном количестве плиток периодического поля последний столбец
+        // соседствует с первым, поэтому получает третий цвет
+        List<List<Integer>> phases = new ArrayList<>();
+        for (int phase = 0; phase < 6; phase++) {
+            phases.add(new ArrayList<>());
+        }
+        for (int tile = 0; tile < tiles; tile++) {
+            int tx = tile / tilesY, ty = tile % tilesY;
+            int colourX = periodic && tilesX > 1 && tilesX % 2 == 1 && tx == tilesX - 1 ? 2 : tx & 1;
+            phases.get((ty & 1) * 3 + colourX).add(tile);
+        }
+
+        ForkJoinPool pool = parallelism > 0 ? new ForkJoinPool(parallelism) : ForkJoinPool.commonPool();
+        try {
+            for (List<Integer> phase : phases) {
+                int[] phaseTiles = phase.stream().mapToInt(Integer::intValue).toArray();
+                pool.invoke(new TileAction(phaseTiles, 0, phaseTiles.length, tile -> fillTile(tile, quota[tile], tileRandom[tile])));
+            }
+
+            if (count != Integer.MAX_VALUE) {
+                // плитка, в которую не поместилась ее доля, отдает недостачу следующим плиткам: они дозаполняются
+                // последовательно своими генераторами, поэтому результат по-прежнему не зависит от количества потоков
+                long shortfall = count - Arrays.stream(tileCount).asLongStream().sum();
+                for (int tile = 0; tile < tiles && shortfall > 0; tile++) {
+                    int before = tileCount[tile];
+                    fillTile(tile, (int) Math.min(Integer.MAX_VALUE, before + shortfall), tileRandom[tile]);
+                    shortfall -= tileCount[tile] - before;
+                }
+            }
+
+            int[] offset = new int[tiles + 1];
+            for (int tile = 0; tile < tiles; tile++) {
+                offset[tile + 1] = offset[tile] + tileCount[tile];
+            }
+            pointsX = new double[offset[tiles]];
+            pointsY = new double[offset[tiles]];
+            int[] allTiles = new int[tiles];
+            Arrays.setAll(allTiles, tile -> tile);
+            pool.invoke(new TileAction(allTiles, 0, tiles, tile -> collectTile(tile, offset[tile])));
+        } finally {
+            if (parallelism > 0) {
+                pool.shutdown();
+            }
+            cellX = null;
+            cellY = null;
+        }
+        return pointsX.length;
+    }
+
+    /**
+     * Задача выполняющая действие над плитками одной фазы, рекурсивно делящая список плиток пополам
+     */
+    @SuppressWarnings("serial")
+    private static class TileAction extends RecursiveAction {
+        /**
+         * Номера плиток фазы
+         */
+        private final int[] tiles;
+        /**
+         * Диапазон номеров в списке плиток [from, to)
+         */
+        private final int from, to;
+        /**
+         * Действие над плиткой
+         */
+        private final IntConsumer task;
+
+        private TileAction(int[] tiles, int from, int to, IntConsumer task) {
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TileAction(tiles, from, middle, task), new TileAction(tiles, middle, to, task));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                task.accept(tiles[i]);
+            }
+        }
+    }
+
+    /**
+     * Метод заполняющий плитку: сначала точки бросаются равномерно по плитке, затем ищутся вокруг найденных точек (алгоритм Бридсона).
+     * Если в плитке уже есть точки, они становятся активными и плитка дозаполняется
+     * @param tile номер плитки
+     * @param quota наибольшее количество точек в плитке (вместе с уже имеющимися)
+     * @param random генератор случайных чисел плитки
+     */
+    private void fillTile(int tile, int quota, SplittableRandom random) {
+        double left = left(tile), right = right(tile), bottom = bottom(tile), top = top(tile);
+        int[] activeList = new int[(lastColumn(tile) - firstColumn(tile)) * (lastRow(tile) - firstRow(tile))];
+        int activeCount = 0;
+        int count = tileCount[tile];
+        if (count > 0) {
+            for (int column = firstColumn(tile); column < lastColumn(tile); column++) {
+                for (int row = firstRow(tile); row < lastRow(tile); row++) {
+                    int cell = column * gridHeight + row;
+                    if (cellX[cell] == cellX[cell]) {
+                        activeList[activeCount++] = cell;
+                    }
+                }
+            }
+        }
+
+        int misses = 0;
+        while (count < quota && misses < PoissonDiskIn2D.MAX_MISSES) {
+            int cell = addIfFar(tile, left + (right - left) * random.nextDouble(), bottom + (top - bottom) * random.nextDouble());
+            if (cell >= 0) {
+                activeList[activeCount++] = cell;
+                count++;
+                misses = 0;
+            } else {
+                misses++;
+            }
+        }
+
+        while (activeCount > 0 && count < quota) {
+            int listIndex = random.nextInt(activeCount);
+            int centre = activeList[listIndex];
+            boolean found = false;
+
+            for (int k = 0; k < numberOfPoints && count < quota; k++) {
+                double radius = minDist + minDist * random.nextDouble();
+                double angle = 2 * Math.PI * random.nextDouble();
+                int cell = addIfFar(tile, cellX[centre] + radius * Math.sin(angle), cellY[centre] + radius * Math.cos(angle));
+                if (cell >= 0) {
+                    activeList[activeCount++] = cell;
+                    count++;
+                    found = true;
+                }
+            }
+
+            if (!found) {
+                activeList[listIndex] = activeList[--activeCount];
+            }
+        }
+        tileCount[tile] = count;
+    }
+
+    /**
+     * Метод добавляющий точку, если она лежит внутри плитки и не находится слишком близко к уже отобранным точкам
+     * @param tile номер плитки
+     * @param x координата x точки
+     * @param y координата y точки
+     * @return номер ячейки добавленной точки или -1, если точка не добавлена
+     */
+    private int addIfFar(int tile, double x, double y) {
+        if (periodic) {
+            x -= width * Math.floor((x - x0) / width);
+        } else if (!(x > x0 && x < x0 + width)) {
+            return -1;
+        }
+        if (!(y > y0 && y < y0 + height)) {
+            return -1;
+        }
+        int column = Math.min(gridWidth - 1, (int) ((x - x0) / cellWidth));
+        int row = Math.min(gridHeight - 1, (int) ((y - y0) / cellHeight));
+        if (column < firstColumn(tile) || column >= lastColumn(tile) || row < firstRow(tile) || row >= lastRow(tile)) {
+            return -1;
+        }
+
+        int fromColumn, toColumn;
+        if (!periodic) {
+            fromColumn = Math.max(0, column - spanX);
+            toColumn = Math.min(gridWidth - 1, column + spanX);
+        } else if (2 * spanX + 1 >= gridWidth) {
+            fromColumn = 0;
+            toColumn = gridWidth - 1;
+        } else {
+            fromColumn = column - spanX;
+            toColumn = column + spanX;
+        }
+        int fromRow = Math.max(0, row - 2), toRow = Math.min(gridHeight - 1, row + 2);
+        double minDist2 = minDist * minDist;
+
+        for (int c = fromColumn; c <= toColumn; c++) {
+            int base = Math.floorMod(c, gridWidth) * gridHeight;
+            for (int j = fromRow; j <= toRow; j++) {
+                double otherX = cellX[base + j];
+                if (otherX == otherX) {
+                    double dx = Math.abs(otherX - x);
+                    if (periodic && dx > width / 2) {
+                        dx = width - dx;
+                    }
+                    double dy = cellY[base + j] - y;
+                    if (dx * dx + dy * dy < minDist2) {
+                        return -1;
+                    }
+                }
+            }
+        }
+
+        int cell = column * gridHeight + row;
+        cellX[cell] = x;
+        cellY[cell] = y;
+        return cell;
+    }
+
+    /**
+     * Метод переписывающий точки плитки в массивы координат
+     * @param tile номер плитки
+     * @param offset номер первой точки плитки в массивах координат
+     */
+    private void collectTile(int tile, int offset) {
+        for (int column = firstColumn(tile); column < lastColumn(tile); column++) {
+            for (int row = firstRow(tile); row < lastRow(tile); row++) {
+                int cell = column * gridHeight + row;
+                if (cellX[cell] == cellX[cell]) {
+                    pointsX[offset] = cellX[cell];
+                    pointsY[offset++] = cellY[cell];
+                }
+            }
+        }
+    }
+
+    /**
+     * Метод возвращающий номер первого столбца сетки плитки
+     * @param tile номер плитки
+     * @return номер первого столбца сетки плитки
+     */
+    private int firstColumn(int tile) {
+        return tile / tilesY * (gridWidth / tilesX);
+    }
+
+    /**
+     * Метод возвращающий номер столбца сетки, следующего за последним столбцом плитки
+     * @param tile номер плитки
+     * @return номер столбца сетки, следующего за последним столбцом плитки
+     */
+    private int lastColumn(int tile) {
+        int tx = tile / tilesY;
+        return tx == tilesX - 1 ? gridWidth : (tx + 1) * (gridWidth / tilesX);
+    }
+
+    /**
+     * Метод возвращающий номер первой строки сетки плитки
+     * @param tile номер плитки
+     * @return номер первой строки сетки плитки
+     */
+    private int firstRow(int tile) {
+        return tile % tilesY * (gridHeight / tilesY);
+    }
+
+    /**
+     * Метод возвращающий номер строки сетки, следующей за последней строкой плитки
+     * @param tile номер плитки
+     * @return номер строки сетки, следующей за последней строкой плитки
+     */
+    private int lastRow(int tile) {
+        int ty = tile % tilesY;
+        return ty == tilesY - 1 ? gridHeight : (ty + 1) * (gridHeight / tilesY);
+    }
+
+    /**
+     * Метод возвращающий левую границу плитки по оси абцисс
+     * @param tile номер плитки
+     * @return координата границы
+     */
+    private double left(int tile) {
+        return x0 + firstColumn(tile) * cellWidth;
+    }
+
+    /**
+     * Метод возвращающий правую границу плитки по оси абцисс
+     * @param tile номер плитки
+     * @return координата границы
+     */
+    private double right(int tile) {
+        return Math.min(x0 + width, x0 + lastColumn(tile) * cellWidth);
+    }
+
+    /**
+     * Метод возвращающий нижнюю границу плитки по оси ординат
+     * @param tile номер плитки
+     * @return координата границы
+     */
+    private double bottom(int tile) {
+        return y0 + firstRow(tile) * cellHeight;
+    }
+
+    /**
+     * Метод возвращающий верхнюю границу плитки по оси ординат
+     * @param tile номер плитки
+     * @return координата границы
+     */
+    private double top(int tile) {
+        return Math.min(y0 + height, y0 + lastRow(tile) * cellHeight);
+    }
+
+    /**
+     * Метод собирающий отобранные точки в коллекцию
+     * @return коллекция точек
+     */
+    private List<Vector2DDouble> pointList() {
+        List<Vector2DDouble> pointList = new ArrayList<>(pointsX.length);
+        for (int i = 0; i < pointsX.length; i++) {
+            pointList.add(new Vector2DDouble(pointsX[i], pointsY[i]));
+        }
+        return pointList;
+    }
+
+    /**
+     * Метод возвращающий координаты x отобранных точек
+     * @return координаты x точек
+     */
+    public double[] getPointsX() {
+        return pointsX;
+    }
+
+    /**
+     * Метод возвращающий координаты y отобранных точек
+     * @return координаты y точек
+     */
+    public double[] getPointsY() {
+        return pointsY;
+    }
+}
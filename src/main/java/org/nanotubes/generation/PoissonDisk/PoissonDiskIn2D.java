@@ -1,8 +1,9 @@
 package org.nanotubes.generation.PoissonDisk;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 import static java.lang.Math.sqrt;
 
@@ -13,11 +14,15 @@ public class PoissonDiskIn2D {
     /**
      * Количество создающихся точек по умолчанию
      */
-    private final static int DEFAULT_POINTS_TO_GENERATE = 10;
+    public final static int DEFAULT_POINTS_TO_GENERATE = 10;
     /**
      * Максимальновозможное количеств создающихся точек
      */
     public final static int MAX_POINTS = 50000;
+    /**
+     * Количество неудачных бросков подряд, после которого выборка заданного количества точек переходит к росту от найденных точек
+     */
+    final static int MAX_MISSES = 100;
 
     /**
      * Количество создающихся точек, в литературе k
@@ -36,6 +41,18 @@ public class PoissonDiskIn2D {
      * Размер ячейки, в литературе для двуменого пространства r / sqrt(2)
      */
     private final double cellSize;
+    /**
+     * Ширина ячейки: равна cellSize, а для периодического поля подобрана так, чтобы ширина поля делилась на нее нацело
+     */
+    private final double cellWidth;
+    /**
+     * Количество соседних столбцов сетки с каждой стороны, в которых ищутся слишком близкие точки
+     */
+    private final int spanX;
+    /**
+     * Периодичность поля по оси абцисс (развертка цилиндра склеивается по линии 0/2pi)
+     */
+    private final boolean periodic;
     /**
      * Минимальное растояние между частицами, в литературе - это радиус частицы r
      */
@@ -45,9 +62,29 @@ public class PoissonDiskIn2D {
      */
     private final int gridWidth, gridHeight;
     /**
-     * Случайное действительное число
+     * Генератор случайных чисел
+     */
+    private final SplittableRandom random;
+    /**
+     * Сетка: номер точки в каждой ячейке (-1 - ячейка пуста), ячейки идут по столбцам
+     */
+    private int[] grid;
+    /**
+     * Координаты отобранных точек
      */
-    private static Random random = new Random();
+    private double[] pointsX, pointsY;
+    /**
+     * Количество отобранных точек
+     */
+    private int pointCount;
+    /**
+     * Номера активных точек, вокруг которых еще ищутся новые точки
+     */
+    private int[] activeList;
+    /**
+     * Количество активных точек
+     */
+    private int activeCount;
 
     /**
      * Конструктор класса создающий новый обект PoissonDisk
@@ -59,6 +96,39 @@ public class PoissonDiskIn2D {
      * @param numberOfPoints количество точек
      */
     public PoissonDiskIn2D(double x0, double y0, double x1, double y1, double minDist, int numberOfPoints) {
+        this(x0, y0, x1, y1, minDist, numberOfPoints, new SplittableRandom());
+    }
+
+    /**
+     * Конструктор класса создающий новый обект PoissonDisk с заданным генератором случайных чисел
+     * @param x0 координата двумерного пространства совподающая с осью абцисс декартовой системы координат в левом нижнем углу поля
+     * @param y0 координата двумерного пространства совподающая с осью оридинат декартовой системы координат в левом нижнем углу поля
+     * @param x1 координата двумерного пространства совподающая с осью абцисс декартовой системы координат в правом верхнем углу поля
+     * @param y1 координата двумерного пространства совподающая с осью ординат декартовой системы координат в правом верхнем углу поля
+     * @param minDist - минимальное расстояние между частицами равное радиусу точек
+     * @param numberOfPoints количество точек
+     * @param random генератор случайных чисел
+     */
+    public PoissonDiskIn2D(double x0, double y0, double x1, double y1, double minDist, int numberOfPoints, SplittableRandom random) {
+        this(x0, y0, x1, y1, minDist, numberOfPoints, random, false);
+    }
+
+    /**
+     * Конструктор класса создающий новый обект PoissonDisk с заданным генератором случайных чисел и, при необходимости, периодичный по оси абцисс:
+     * точки у левого и правого краев поля считаются соседними, поэтому у линии склейки не остается искусственного зазора
+     * @param x0 координата двумерного пространства совподающая с осью абцисс декартовой системы координат в левом нижнем углу поля
+     * @param y0 координата двумерного пространства совподающая с осью оридинат декартовой системы координат в левом нижнем углу поля
+     * @param x1 координата двумерного пространства совподающая с осью абцисс декартовой системы координат в правом верхнем углу поля
+     * @param y1 координата двумерного пространства совподающая с осью ординат декартовой системы координат в правом верхнем углу поля
+     * @param minDist - минимальное расстояние между частицами равное радиусу точек
+     * @param numberOfPoints количество точек
+     * @param random генератор случайных чисел
+     * @param periodic периодичность поля по оси абцисс
+     */
+    public PoissonDiskIn2D(double x0, double y0, double x1, double y1, double minDist, int numberOfPoints,
+                           SplittableRandom random, boolean periodic) {
+        this.random = random;
+        this.periodic = periodic;
         point0 = new Vector2DDouble(x0, y0);
         point1 = new Vector2DDouble(x1, y1);
         dimensions = new Vector2DDouble(x1 - x0, y1 - y0);
@@ -66,8 +136,15 @@ public class PoissonDiskIn2D {
         this.minDist = minDist;
         this.numberOfPoints = numberOfPoints;
         cellSize = minDist/ sqrt(2);
-        gridWidth = (int) (dimensions.getX()/cellSize) + 1;
+        if (periodic) {
+            gridWidth = Math.max(1, (int) Math.ceil(dimensions.getX()/cellSize));
+            cellWidth = dimensions.getX()/gridWidth;
+        } else {
+            gridWidth = (int) (dimensions.getX()/cellSize) + 1;
+            cellWidth = cellSize;
+        }
         gridHeight = (int) (dimensions.getY()/cellSize) + 1;
+        spanX = (int) Math.ceil(minDist/cellWidth);
     }
 
     /**
@@ -87,131 +164,225 @@ public class PoissonDiskIn2D {
      * @return коллекцию точек
      */
     public List<Vector2DDouble> ListOfPointsPoissonDisk() {
-        Vector2DDouble[][] grid = new Vector2DDouble[gridWidth][gridHeight];
-        List<Vector2DDouble> activeList = new LinkedList<>();
-        List<Vector2DDouble> pointList = new LinkedList<>();
+        prepare(MAX_POINTS + numberOfPoints);
+        addFirstPoint();
+        grow(MAX_POINTS);
+        return pointList();
+    }
 
-        for (int i = 0; i < gridWidth; i++) {
-            for (int j = 0; j < gridHeight; j++) {
-                grid[i][j] = null;
-            }
+    /**
+     * Метод создающий не больше заданного количества точек, соответствующих распределению Пуассона, и останавливающийся, как только они найдены.
+     * Точки бросаются равномерно по всему полю (отбираются те, что не ближе минимального расстояния к уже отобранным), поэтому они
+     * покрывают поле равномерно, а не растут пятном от первой точки. Если броски подряд перестают попадать, поиск продолжается
+     * алгоритмом Бридсона вокруг уже отобранных точек
+     * @param count количество точек
+     * @return коллекцию точек в случайном порядке (меньше count, если столько точек в поле не помещается)
+     */
+    public List<Vector2DDouble> ListOfPointsPoissonDisk(int count) {
+        sample(count);
+        return pointList();
+    }
+
+    /**
+     * Метод создающий не больше заданного количества точек так же, как ListOfPointsPoissonDisk(count), но без создания объектов Vector2DDouble
+     * (координаты возвращают getPointsX и getPointsY)
+     * @param count количество точек
+     * @return количество созданных точек
+     */
+    public int sample(int count) {
+        prepare(count);
+
+        int misses = 0;
+        while (pointCount < count && misses < MAX_MISSES) {
+            double x = point0.getX() + dimensions.getX() * random.nextDouble();
+            double y = point0.getY() + dimensions.getY() * random.nextDouble();
+            misses = addIfFar(x, y) ? 0 : misses + 1;
         }
 
-        addFirstPoint(grid, activeList, pointList);
+        grow(count);
+        return pointCount;
+    }
+
+    /**
+     * Метод создающий пустую сетку и массивы точек
+     * @param limit наибольшее количество точек
+     */
+    private void prepare(int limit) {
+        // в каждой ячейке сетки не больше одной точки, поэтому массивы не придется расширять
+        int capacity = (int) Math.min((long) gridWidth * gridHeight, limit);
+        pointsX = new double[capacity];
+        pointsY = new double[capacity];
+        activeList = new int[capacity];
+        pointCount = 0;
+        activeCount = 0;
+        grid = new int[gridWidth * gridHeight];
+        Arrays.fill(grid, -1);
+    }
 
-        while (!activeList.isEmpty() && (pointList.size() < MAX_POINTS)) {
-            int listIndex = random.nextInt(activeList.size());
+    /**
+     * Метод добавляющий точки вокруг активных точек (алгоритм Бридсона), пока активные точки не закончатся или не будет найдено заданное количество точек
+     * @param limit наибольшее количество точек
+     */
+    private void grow(int limit) {
+        while (activeCount > 0 && (pointCount < limit)) {
+            int listIndex = random.nextInt(activeCount);
 
-            Vector2DDouble vector2DDouble = activeList.get(listIndex);
+            int centre = activeList[listIndex];
             boolean found = false;
 
-            for (int k = 0; k < numberOfPoints; k++) {
-                found |= addNextPoint(grid, vector2DDouble, activeList, pointList);
+            for (int k = 0; k < numberOfPoints && pointCount < limit; k++) {
+                found |= addNextPoint(pointsX[centre], pointsY[centre]);
             }
 
             if (!found) {
-                activeList.remove(listIndex);
+                // удаление за O(1): на место удаляемой точки ставится последняя активная точка
+                activeList[listIndex] = activeList[--activeCount];
             }
         }
+    }
 
+    /**
+     * Метод собирающий отобранные точки в коллекцию
+     * @return коллекция точек
+     */
+    private List<Vector2DDouble> pointList() {
+        List<Vector2DDouble> pointList = new ArrayList<>(pointCount);
+        for (int i = 0; i < pointCount; i++) {
+            pointList.add(new Vector2DDouble(pointsX[i], pointsY[i]));
+        }
         return pointList;
     }
 
+    /**
+     * Метод возвращающий координаты x отобранных точек
+     * @return координаты x точек
+     */
+    public double[] getPointsX() {
+        return Arrays.copyOf(pointsX, pointCount);
+    }
+
+    /**
+     * Метод возвращающий координаты y отобранных точек
+     * @return координаты y точек
+     */
+    public double[] getPointsY() {
+        return Arrays.copyOf(pointsY, pointCount);
+    }
+
     /**
      * Метод создающий первую точку в случайом месте сетки и записывающий её в списки
-     * @param grid сетка
-     * @param activeList еще не отобранные точки
-     * @param pointList точки состовляющие выборку по диску Пуассона
      */
-    private void addFirstPoint(Vector2DDouble[][] grid, List<Vector2DDouble> activeList,
-                               List<Vector2DDouble> pointList) {
+    private void addFirstPoint() {
         double d = random.nextDouble();
         double xr = point0.getX() + dimensions.getX() * d;
 
         d = random.nextDouble();
         double yr = point0.getY() + dimensions.getY() * d;
 
-        Vector2DDouble vector2DDouble = new Vector2DDouble(xr, yr);
-        Vector2DInt index = PoissonDiskIn2D.Vector2DDoubleToInt(vector2DDouble, point0, cellSize);
-
-        grid[index.getX()][index.getY()] = vector2DDouble;
-
-        activeList.add(vector2DDouble);
-        pointList.add(vector2DDouble);
+        addPoint(xr, yr);
     }
 
     /**
-     * Метод преобразующий действительные кординаты точки в целочисленные координаты точки в сетке
-     * @param pointDouble действительные кординаты точки
-     * @param origin действительные координаты ливого нижнего угла сетки
-     * @param cellSize размер ячейки
-     * @return целочисленные координаты точки в сетке
+     * Метод записывающий отобранную точку в сетку, в список точек и в список активных точек
+     * @param x координата x отобранной точки
+     * @param y координата y отобранной точки
      */
-    private static Vector2DInt Vector2DDoubleToInt(Vector2DDouble pointDouble,
-                                                   Vector2DDouble origin, double cellSize)
-    {
-        return new Vector2DInt((int) ((pointDouble.getX() - origin.getX()) / cellSize),
-                (int) ((pointDouble.getY() - origin.getY()) / cellSize));
+    private void addPoint(double x, double y) {
+        grid[columnOf(x) * gridHeight + rowOf(y)] = pointCount;
+        pointsX[pointCount] = x;
+        pointsY[pointCount] = y;
+        activeList[activeCount++] = pointCount++;
     }
 
     /**
-     * Метод добавляющий заданную точку в коллекцию при условие что она не находится слишком близко к существующей точке в коллекции
-     * @param grid сетка
-     * @param vector2DDouble новая точка, которая добавиться в коллекцию
-     * @return истину или ложь
+     * Метод возвращающий номер столбца сетки, в котором лежит точка
+     * @param x координата x точки
+     * @return номер столбца
      */
-    private boolean addNextPoint (Vector2DDouble[][] grid, Vector2DDouble vector2DDouble, List<Vector2DDouble> activeList,
-                                  List<Vector2DDouble> pointList) {
-        boolean found = false;
-        Vector2DDouble point = generateRandomAround(vector2DDouble,minDist);
-
-        if ((point.getX() > point0.getX()) && (point.getX() < point1.getX())
-                && (point.getY() > point0.getY()) && (point.getY() < point1.getY())) {
-
-            Vector2DInt pointIndex = Vector2DDoubleToInt(point,point0,cellSize);
-            boolean tooClose = false;
-
-            for (int i = Math.max(0, pointIndex.getX() - 2);
-                 i < Math.min(gridWidth, pointIndex.getX() + 3) && !tooClose; i++) {
-
-                for (int j = Math.max(0, pointIndex.getY() - 2);
-                     j < Math.min(gridHeight, pointIndex.getY() + 3) && !tooClose; j++) {
-
-                    if (grid[i][j] != null) {
+    private int columnOf(double x) {
+        return Math.min(gridWidth - 1, (int) ((x - point0.getX()) / cellWidth));
+    }
 
-                        if (Vector2DDouble.distance(grid[i][j], point) < minDist) {
-                            tooClose = true;
-                        }
-                    }
-                }
-            } if (!tooClose) {
-                found = true;
-                activeList.add(point);
-                pointList.add(point);
-                grid[pointIndex.getX()][pointIndex.getY()] = point;
-            }
-        }
-        return found;
+    /**
+     * Метод возвращающий номер строки сетки, в которой лежит точка
+     * @param y координата y точки
+     * @return номер строки
+     */
+    private int rowOf(double y) {
+        return (int) ((y - point0.getY()) / cellSize);
     }
 
     /**
-     * Метод генерирующий случайную точку в области, центром которой является заданная точка. Область генерации (кольуо) имеет минимальный внутренний радиус, внешний радиус в два раза больше минимального радиуса.
-     * @param centre точка вокруг которой происходит генерация
-     * @param minDist минимальное расстояие между частицами равное радиусу частицы
-     * @return случайню точку принадлежащую кольцевой области вокруг исходной точки
+     * Метод генерирующий случайную точку в области, центром которой является заданная точка, и добавляющий её в коллекцию при условие что она
+     * не находится слишком близко к существующей точке в коллекции. Область генерации (кольуо) имеет минимальный внутренний радиус,
+     * внешний радиус в два раза больше минимального радиуса.
+     * @param centreX координата x точки, вокруг которой генерируется новая точка
+     * @param centreY координата y точки, вокруг которой генерируется новая точка
+     * @return истину или ложь
      */
-    private static Vector2DDouble generateRandomAround(Vector2DDouble centre, double minDist) {
+    private boolean addNextPoint (double centreX, double centreY) {
         double d = random.nextDouble();
         double radius = minDist + minDist * d;
 
         d = random.nextDouble();
         double angle = 2 * Math.PI * d;
 
-        double newX = radius * Math.sin(angle);
-        double newY = radius * Math.cos(angle);
-
-        return new Vector2DDouble(centre.getX() + newX, centre.getY() + newY);
+        return addIfFar(centreX + radius * Math.sin(angle), centreY + radius * Math.cos(angle));
     }
 
+    /**
+     * Метод добавляющий точку, если она лежит внутри поля и не находится слишком близко к уже отобранным точкам
+     * (в периодическом поле точка, вышедшая за левый или правый край, переносится на другой край)
+     * @param x координата x точки
+     * @param y координата y точки
+     * @return истину, если точка добавлена
+     */
+    private boolean addIfFar(double x, double y) {
+        if (periodic) {
+            x -= dimensions.getX() * Math.floor((x - point0.getX()) / dimensions.getX());
+        } else if (!(x > point0.getX() && x < point1.getX())) {
+            return false;
+        }
+        if (!(y > point0.getY() && y < point1.getY())) {
+            return false;
+        }
+
+        int column = columnOf(x);
+        int row = rowOf(y);
+        int firstColumn, lastColumn;
+        if (!periodic) {
+            firstColumn = Math.max(0, column - spanX);
+            lastColumn = Math.min(gridWidth - 1, column + spanX);
+        } else if (2 * spanX + 1 >= gridWidth) {
+            firstColumn = 0;
+            lastColumn = gridWidth - 1;
+        } else {
+            firstColumn = column - spanX;
+            lastColumn = column + spanX;
+        }
+
+        int firstRow = Math.max(0, row - 2), lastRow = Math.min(gridHeight - 1, row + 2);
+        double minDist2 = minDist * minDist;
+        double width = dimensions.getX();
+
+        for (int c = firstColumn; c <= lastColumn; c++) {
+            int base = Math.floorMod(c, gridWidth) * gridHeight;
+            for (int j = firstRow; j <= lastRow; j++) {
+                int other = grid[base + j];
+                if (other >= 0) {
+                    double dx = Math.abs(pointsX[other] - x);
+                    if (periodic && dx > width / 2) {
+                        dx = width - dx;
+                    }
+                    double dy = pointsY[other] - y;
+                    if (dx * dx + dy * dy < minDist2) {
+                        return false;
+                    }
+                }
+            }
+        }
 
+        addPoint(x, y);
+        return true;
+    }
 }
@@ -0,0 +1,103 @@
+package org.nanotubes.generation.PoissonDisk;
+
+import java.util.Arrays;
+
+/**
+ * Класс проверяющий, что точки лежат внутри поля и никакие две точки не находятся ближе минимального расстояния
+ * (то же условие, что проверяет addNextPoint). Пары ищутся по сетке с ячейкой не меньше минимального расстояния, поэтому
+ * проверка миллионов точек занимает линейное время
+ */
+public final class PoissonDiskValidator {
+
+    private PoissonDiskValidator() {
+    }
+
+    /**
+     * Метод проверяющий точки и бросающий исключение при нарушении
+     * @param x координаты x точек
+     * @param y координаты y точек
+     * @param x0 координата x левого нижнего угла поля
+     * @param y0 координата y левого нижнего угла поля
+     * @param x1 координата x правого верхнего угла поля
+     * @param y1 координата y правого верхнего угла поля
+     * @param minDist минимальное расстояние между точками
+     * @param periodic периодичность поля по оси абцисс
+     * @throws IllegalStateException точка вне поля или пара точек ближе минимального расстояния
+     */
+    public static void validate(double[] x, double[] y, double x0, double y0, double x1, double y1,
+                                double minDist, boolean periodic) {
+        long violations = countViolations(x, y, x0, y0, x1, y1, minDist, periodic);
+        if (violations > 0) {
+            throw new IllegalStateException(violations + " points outside the field or pairs closer than " + minDist);
+        }
+    }
+
+    /**
+     * Метод считающий точки вне поля и пары точек, находящихся ближе минимального расстояния
+     * (в периодическом поле расстояние по оси абцисс измеряется через линию склейки, если так короче)
+     * @param x координаты x точек
+     * @param y координаты y точек
+     * @param x0 координата x левого нижнего угла поля
+     * @param y0 координата y левого нижнего угла поля
+     * @param x1 координата x правого верхнего угла поля
+     * @param y1 координата y правого верхнего угла поля
+     * @param minDist минимальное расстояние между точками
+     * @param periodic периодичность поля по оси абцисс
+     * @return количество нарушений
+     */
+    public static long countViolations(double[] x, double[] y, double x0, double y0, double x1, double y1,
+                                       double minDist, boolean periodic) {
+        int count = x.length;
+        double width = x1 - x0;
+        int columns = (int) Math.max(1, Math.min(count, width / minDist));
+        int rows = (int) Math.max(1, Math.min(count, (y1 - y0) / minDist));
+        long violations = 0;
+
+        // точки раскладываются по ячейкам списками head/next
+        int[] head = new int[columns * rows];
+        int[] next = new int[count];
+        int[] cellOf = new int[count];
+        Arrays.fill(head, -1);
+        for (int i = 0; i < count; i++) {
+            if (!(x[i] >= x0 && x[i] <= x1 && y[i] >= y0 && y[i] <= y1)) {
+                violations++;
+            }
+            int column = Math.min(columns - 1, Math.max(0, (int) ((x[i] - x0) / width * columns)));
+            int row = Math.min(rows - 1, Math.max(0, (int) ((y[i] - y0) / (y1 - y0) * rows)));
+            cellOf[i] = column * rows + row;
+            next[i] = head[cellOf[i]];
+            head[cellOf[i]] = i;
+        }
+
+        double minDist2 = minDist * minDist;
+        for (int i = 0; i < count; i++) {
+            int column = cellOf[i] / rows, row = cellOf[i] % rows;
+            int fromColumn = column - 1, toColumn = column + 1;
+            if (columns <= 3) {
+                fromColumn = 0;
+                toColumn = columns - 1;
+            } else if (!periodic) {
+                fromColumn = Math.max(0, fromColumn);
+                toColumn = Math.min(columns - 1, toColumn);
+            }
+            for (int c = fromColumn; c <= toColumn; c++) {
+                int base = Math.floorMod(c, columns) * rows;
+                for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+                    for (int j = head[base + r]; j >= 0; j = next[j]) {
+                        if (j > i) {
+                            double dx = Math.abs(x[i] - x[j]);
+                            if (periodic && dx > width / 2) {
+                                dx = width - dx;
+                            }
+                            double dy = y[i] - y[j];
+                            if (dx * dx + dy * dy < minDist2) {
+                                violations++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return violations;
+    }
+}
@@ -0,0 +1,104 @@
+package org.nanotubes.minimization;
+
+import org.nanotubes.generation.Geom.ParticleSystem;
+
+/**
+ * Класс с общими параметрами минимизаторов по градиенту: точность, наибольшее количество шагов и наибольший сдвиг частицы за шаг
+ */
+public abstract class AbstractMinimizer implements Minimizer {
+    /**
+     * Точность по умолчанию (среднеквадратичный градиент на частицу)
+     */
+    public static final double DEFAULT_TOLERANCE = 1e-3;
+
+    /**
+     * Среднеквадратичный градиент на частицу, при котором минимизация останавливается
+     */
+    protected double tolerance = DEFAULT_TOLERANCE;
+    /**
+     * Наибольшее количество шагов
+     */
+    protected int maxIterations = Minimization.MAX_ITERATIONS;
+    /**
+     * Наибольший сдвиг частицы за шаг (0 - четверть среднего расстояния между частицами)
+     */
+    protected double maxStep;
+
+    /**
+     * Конструктор класса создающий минимизатор с точностью и наибольшим количеством шагов по умолчанию
+     */
+    protected AbstractMinimizer() {
+    }
+
+    /**
+     * Метод задающий точность
+     * @param tolerance среднеквадратичный градиент на частицу, при котором минимизация останавливается
+     */
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Метод задающий наибольшее количество шагов
+     * @param maxIterations наибольшее количество шагов
+     */
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Метод задающий наибольший сдвиг частицы за шаг
+     * @param maxStep наибольший сдвиг (0 - четверть среднего расстояния между частицами)
+     */
+    public void setMaxStep(double maxStep) {
+        this.maxStep = maxStep;
+    }
+
+    /**
+     * Метод возвращающий наибольший сдвиг частицы за шаг для заданной системы
+     * @param field поле взаимодействия частиц
+     * @param system координаты частиц
+     * @return наибольший сдвиг
+     */
+    protected double maxStep(ForceField field, ParticleSystem system) {
+        return maxStep > 0 ? maxStep : field.spacing(system.size()) / 4;
+    }
+
+    /**
+     * Метод сдвигающий все частицы на заданные сдвиги, умноженные на множитель; если сдвиг какой-либо частицы
+     * длиннее limit, все сдвиги пропорционально уменьшаются
+     * @param field поле взаимодействия частиц
+     * @param system координаты частиц
+     * @param dx сдвиги вдоль развертки
+     * @param dz сдвиги по z
+     * @param scale множитель сдвигов
+     * @param limit наибольший сдвиг частицы
+     */
+    protected static void displaceAll(ForceField field, ParticleSystem system, double[] dx, double[] dz,
+                                      double scale, double limit) {
+        double longest2 = 0;
+        for (int i = 0; i < dx.length; i++) {
+            longest2 = Math.max(longest2, dx[i] * dx[i] + dz[i] * dz[i]);
+        }
+        double longest = Math.abs(scale) * Math.sqrt(longest2);
+        if (longest > limit) {
+            scale *= limit / longest;
+        }
+        for (int i = 0; i < dx.length; i++) {
+            field.displace(system, i, scale * dx[i], scale * dz[i]);
+        }
+    }
+
+    /**
+     * Метод создающий минимизатор по названию
+     * @param name название: fire - FIRE, bb - градиентный спуск с шагом Барзилая-Борвейна
+     * @return минимизатор с параметрами по умолчанию
+     */
+    public static AbstractMinimizer of(String name) {
+        return switch (name) {
+            case "fire" -> new FireMinimizer();
+            case "bb" -> new BarzilaiBorweinMinimizer();
+            default -> throw new IllegalArgumentException("unknown minimizer " + name);
+        };
+    }
+}
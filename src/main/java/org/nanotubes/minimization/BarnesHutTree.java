@@ -0,0 +1,370 @@
+package org.nanotubes.minimization;
+
+import org.nanotubes.generation.Geom.ParticleSystem;
+import org.nanotubes.generation.Geom.Tube;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Класс приближенно вычисляющий энергию взаимодействия 1/r^degree всех пар частиц и её градиент деревом Барнса-Хата
+ * на развертке цилиндра. Частицы раскладываются по дереву прямоугольников, близких к квадратам (прямоугольник делится
+ * на четыре части или, если он вытянут, на две), для каждого узла запоминаются число частиц, центр масс и вторые моменты.
+ * Взаимодействие частицы с узлом, размер которого меньше theta, умноженного на расстояние до центра масс,
+ * заменяется разложением по мультиполям до квадрупольного, остальные узлы раскрываются, частицы листьев учитываются точно.
+ * Расстояние вдоль развертки берется до ближайшего образа центра масс с периодом 2pi*R. Для узла, пересекающего
+ * линию напротив частицы, ближайшие образы его частиц различны, поэтому такой узел заменяется разложением только
+ * при размере меньше theta^2, умноженного на расстояние (отличие от точной суммы ForceField по всем парам исчезает
+ * при theta -> 0). Время вычисления растет как N*log(N); частицы обходят дерево параллельно в порядке узлов,
+ * чтобы соседние обходы читали одни и те же узлы
+ */
+public class BarnesHutTree {
+    /**
+     * Наибольшее количество частиц в листе
+     */
+    private static final int LEAF_SIZE = 16;
+    /**
+     * Наибольшая глубина дерева (совпадающие частицы не делятся бесконечно)
+     */
+    private static final int MAX_DEPTH = 48;
+    /**
+     * Количество частиц, обходящих дерево в одной параллельной задаче
+     */
+    private static final int CHUNK = 1024;
+
+    /**
+     * Степень (из теории)
+     */
+    private final int degree;
+    /**
+     * Длина окружности цилиндра (период по x)
+     */
+    private final double width;
+    /**
+     * Высота цилиндра
+     */
+    private final double heightTube;
+    /**
+     * Квадрат параметра раскрытия узлов theta
+     */
+    private final double theta2;
+
+    /**
+     * Координаты частиц на развертке
+     */
+    private double[] x, z;
+    /**
+     * Номера частиц, упорядоченные по узлам дерева
+     */
+    private int[] order;
+    /**
+     * Координаты частиц в порядке узлов дерева (частицы листа лежат подряд)
+     */
+    private double[] sortedX, sortedZ;
+    /**
+     * Энергии, приходящиеся на каждую частицу в порядке узлов (складываются после параллельного обхода по порядку)
+     */
+    private double[] energyOfParticle;
+    /**
+     * Количество узлов дерева
+     */
+    private int nodes;
+    /**
+     * Первая частица узла в order и следующая за последней
+     */
+    private int[] start, end;
+    /**
+     * Первый дочерний узел и количество дочерних узлов (0 - лист)
+     */
+    private int[] firstChild, childCount;
+    /**
+     * Центр масс узла
+     */
+    private double[] centerX, centerZ;
+    /**
+     * Вторые моменты частиц узла относительно центра масс
+     */
+    private double[] momentXX, momentXZ, momentZZ;
+    /**
+     * Границы частиц узла
+     */
+    private double[] minX, maxX, minZ, maxZ;
+    /**
+     * Квадрат размера узла (наибольшей стороны прямоугольника, содержащего частицы узла)
+     */
+    private double[] size2;
+
+    /**
+     * Конструктор класса создающий дерево Барнса-Хата для цилиндра
+     * @param degree степень (из теории)
+     * @param tube параметры цилиндра
+     * @param theta параметр раскрытия узлов: отношение размера узла к расстоянию, начиная с которого узел раскрывается
+     *              (0 - точная сумма, обычно 0.3 - 0.7)
+     */
+    public BarnesHutTree(int degree, Tube tube, double theta) {
+        if (!(theta >= 0 && theta < 1)) {
+            throw new IllegalArgumentException("theta must be in [0, 1): " + theta);
+        }
+        this.degree = degree;
+        this.width = 2 * Math.PI * tube.getRadius();
+        this.heightTube = tube.getHeight();
+        this.theta2 = theta * theta;
+    }
+
+    /**
+     * Метод вычисляющий энергию пар частиц и добавляющий её градиент. Как и в ForceField, каждая пара частиц
+     * входит в энергию дважды
+     * @param system координаты частиц
+     * @param gradX массив производных энергии по x = phi*rho, к которому добавляется градиент
+     * @param gradZ массив производных энергии по z, к которому добавляется градиент
+     * @return энергия пар частиц
+     */
+    public double evaluate(ParticleSystem system, double[] gradX, double[] gradZ) {
+        int numberOfParticle = system.size();
+        build(system);
+        IntStream.range(0, (numberOfParticle + CHUNK - 1) / CHUNK).parallel().forEach(chunk -> {
+            int[] stack = new int[4 * MAX_DEPTH + 4];
+            double[] gradient = new double[2];
+            for (int k = chunk * CHUNK; k < Math.min(numberOfParticle, (chunk + 1) * CHUNK); k++) {
+                energyOfParticle[k] = potential(k, stack, gradient);
+                int i = order[k];
+                gradX[i] += 2 * gradient[0];
+                gradZ[i] += 2 * gradient[1];
+            }
+        });
+        double energy = 0;
+        for (int i = 0; i < numberOfParticle; i++) {
+            energy += energyOfParticle[i];
+        }
+        return energy;
+    }
+
+    /**
+     * Метод вычисляющий энергию взаимодействия частицы со всеми остальными частицами обходом дерева
+     * @param i номер частицы в порядке узлов дерева
+     * @param stack стек узлов для обхода
+     * @param gradient массив, в который записывается градиент энергии по координатам частицы
+     * @return энергия взаимодействия частицы с остальными частицами
+     */
+    private double potential(int i, int[] stack, double[] gradient) {
+        double xi = sortedX[i], zi = sortedZ[i];
+        double energy = 0, gx = 0, gz = 0;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            double dx = xi - centerX[node];
+            double shift = width * Math.rint(dx / width);
+            dx -= shift;
+            double dz = zi - centerZ[node];
+            double r2 = dx * dx + dz * dz;
+            double xs = xi - shift;
+            boolean inside = xs >= minX[node] && xs <= maxX[node] && zi >= minZ[node] && zi <= maxZ[node];
+            boolean straddle = xs - minX[node] > width / 2 || maxX[node] - xs > width / 2;
+            if (!inside && size2[node] < (straddle ? theta2 * theta2 : theta2) * r2) {
+                // монополь и квадруполь: e = M/R^d + (-d*tr(S)/R^(d+2) + d(d+2)*R.S.R/R^(d+4))/2
+                double e = PairKernel.energy(r2, degree);
+                double inverse = 1 / r2;
+                double mass = end[node] - start[node];
+                double sxx = momentXX[node], sxz = momentXZ[node], szz = momentZZ[node];
+                double trace = sxx + szz;
+                double sx = sxx * dx + sxz * dz, sz = sxz * dx + szz * dz;
+                double quadratic = dx * sx + dz * sz;
+                double d2 = degree * (degree + 2.0);
+                double e2 = e * inverse, e4 = e2 * inverse;
+                energy += mass * e + 0.5 * (-degree * trace * e2 + d2 * quadratic * e4);
+                double radial = -mass * degree * e2
+                        + 0.5 * d2 * (trace * e4 - (degree + 4) * quadratic * e4 * inverse);
+                gx += radial * dx + d2 * e4 * sx;
+                gz += radial * dz + d2 * e4 * sz;
+            } else if (childCount[node] == 0) {
+                for (int k = start[node]; k < end[node]; k++) {
+                    if (k == i) {
+                        continue;
+                    }
+                    double px = xi - sortedX[k];
+                    px -= width * Math.rint(px / width);
+                    double pz = zi - sortedZ[k];
+                    double p2 = px * px + pz * pz;
+                    double e = PairKernel.energy(p2, degree);
+                    double force = PairKernel.force(p2, e, degree);
+                    energy += e;
+                    gx -= force * px;
+                    gz -= force * pz;
+                }
+            } else {
+                for (int c = 0; c < childCount[node]; c++) {
+                    stack[top++] = firstChild[node] + c;
+                }
+            }
+        }
+        gradient[0] = gx;
+        gradient[1] = gz;
+        return energy;
+    }
+
+    /**
+     * Метод строящий дерево по текущим координатам частиц
+     * @param system координаты частиц
+     */
+    private void build(ParticleSystem system) {
+        int numberOfParticle = system.size();
+        if (x == null || x.length != numberOfParticle) {
+            x = new double[numberOfParticle];
+            z = new double[numberOfParticle];
+            order = new int[numberOfParticle];
+            sortedX = new double[numberOfParticle];
+            sortedZ = new double[numberOfParticle];
+            energyOfParticle = new double[numberOfParticle];
+            allocate(Math.max(16, numberOfParticle / 4));
+        }
+        for (int i = 0; i < numberOfParticle; i++) {
+            double value = system.getPhi(i) * system.getRho(i);
+            x[i] = value - width * Math.floor(value / width);
+            z[i] = system.getZ(i);
+            order[i] = i;
+        }
+        nodes = 1;
+        split(0, 0, numberOfParticle, 0, width, -heightTube / 2, heightTube / 2, 0);
+        for (int k = 0; k < numberOfParticle; k++) {
+            sortedX[k] = x[order[k]];
+            sortedZ[k] = z[order[k]];
+        }
+    }
+
+    /**
+     * Метод заполняющий узел и рекурсивно делящий его на дочерние узлы
+     * @param node номер узла
+     * @param from первая частица узла в order
+     * @param to частица, следующая за последней частицей узла в order
+     * @param x0 левая граница прямоугольника узла
+     * @param x1 правая граница прямоугольника узла
+     * @param z0 нижняя граница прямоугольника узла
+     * @param z1 верхняя граница прямоугольника узла
+     * @param depth глубина узла
+     */
+    private void split(int node, int from, int to, double x0, double x1, double z0, double z1, int depth) {
+        start[node] = from;
+        end[node] = to;
+        double cx = 0, cz = 0;
+        double lowX = Double.POSITIVE_INFINITY, highX = Double.NEGATIVE_INFINITY;
+        double lowZ = Double.POSITIVE_INFINITY, highZ = Double.NEGATIVE_INFINITY;
+        for (int k = from; k < to; k++) {
+            int j = order[k];
+            cx += x[j];
+            cz += z[j];
+            lowX = Math.min(lowX, x[j]);
+            highX = Math.max(highX, x[j]);
+            lowZ = Math.min(lowZ, z[j]);
+            highZ = Math.max(highZ, z[j]);
+        }
+        cx /= to - from;
+        cz /= to - from;
+        double sxx = 0, sxz = 0, szz = 0;
+        for (int k = from; k < to; k++) {
+            int j = order[k];
+            double dx = x[j] - cx, dz = z[j] - cz;
+            sxx += dx * dx;
+            sxz += dx * dz;
+            szz += dz * dz;
+        }
+        centerX[node] = cx;
+        centerZ[node] = cz;
+        momentXX[node] = sxx;
+        momentXZ[node] = sxz;
+        momentZZ[node] = szz;
+        minX[node] = lowX;
+        maxX[node] = highX;
+        minZ[node] = lowZ;
+        maxZ[node] = highZ;
+        double side = Math.max(highX - lowX, highZ - lowZ);
+        size2[node] = side * side;
+        childCount[node] = 0;
+        if (to - from <= LEAF_SIZE || depth >= MAX_DEPTH) {
+            return;
+        }
+
+        // вытянутый прямоугольник делится только поперек длинной стороны
+        double w = x1 - x0, h = z1 - z0;
+        boolean splitX = w > h / 2, splitZ = h > w / 2;
+        double midX = (x0 + x1) / 2, midZ = (z0 + z1) / 2;
+        int[] bounds = new int[5];
+        bounds[0] = from;
+        bounds[4] = to;
+        bounds[2] = splitX ? partition(from, to, x, midX) : to;
+        bounds[1] = splitZ ? partition(from, bounds[2], z, midZ) : bounds[2];
+        bounds[3] = splitZ ? partition(bounds[2], to, z, midZ) : to;
+        int first = nodes;
+        int count = 0;
+        for (int c = 0; c < 4; c++) {
+            if (bounds[c + 1] > bounds[c]) {
+                count++;
+            }
+        }
+        if (nodes + count > start.length) {
+            allocate(2 * start.length);
+        }
+        nodes += count;
+        firstChild[node] = first;
+        childCount[node] = count;
+        int child = first;
+        for (int c = 0; c < 4; c++) {
+            if (bounds[c + 1] > bounds[c]) {
+                split(child++, bounds[c], bounds[c + 1],
+                        (c & 2) == 0 ? x0 : midX, (c & 2) == 0 ? (splitX ? midX : x1) : x1,
+                        (c & 1) == 0 ? z0 : midZ, (c & 1) == 0 ? (splitZ ? midZ : z1) : z1, depth + 1);
+            }
+        }
+    }
+
+    /**
+     * Метод переставляющий частицы отрезка order так, что сначала идут частицы с координатой меньше mid
+     * @param from начало отрезка
+     * @param to конец отрезка
+     * @param coordinate координаты частиц
+     * @param mid граница
+     * @return индекс первой частицы с координатой не меньше mid
+     */
+    private int partition(int from, int to, double[] coordinate, double mid) {
+        int left = from, right = to - 1;
+        while (left <= right) {
+            if (coordinate[order[left]] < mid) {
+                left++;
+            } else {
+                int t = order[left];
+                order[left] = order[right];
+                order[right--] = t;
+            }
+        }
+        return left;
+    }
+
+    /**
+     * Метод увеличивающий массивы узлов до заданной вместимости с сохранением построенных узлов
+     * @param capacity количество узлов
+     */
+    private void allocate(int capacity) {
+        start = start == null ? new int[capacity] : Arrays.copyOf(start, capacity);
+        end = end == null ? new int[capacity] : Arrays.copyOf(end, capacity);
+        firstChild = firstChild == null ? new int[capacity] : Arrays.copyOf(firstChild, capacity);
+        childCount = childCount == null ? new int[capacity] : Arrays.copyOf(childCount, capacity);
+        centerX = centerX == null ? new double[capacity] : Arrays.copyOf(centerX, capacity);
+        centerZ = centerZ == null ? new double[capacity] : Arrays.copyOf(centerZ, capacity);
+        momentXX = momentXX == null ? new double[capacity] : Arrays.copyOf(momentXX, capacity);
+        momentXZ = momentXZ == null ? new double[capacity] : Arrays.copyOf(momentXZ, capacity);
+        momentZZ = momentZZ == null ? new double[capacity] : Arrays.copyOf(momentZZ, capacity);
+        minX = minX == null ? new double[capacity] : Arrays.copyOf(minX, capacity);
+        maxX = maxX == null ? new double[capacity] : Arrays.copyOf(maxX, capacity);
+        minZ = minZ == null ? new double[capacity] : Arrays.copyOf(minZ, capacity);
+        maxZ = maxZ == null ? new double[capacity] : Arrays.copyOf(maxZ, capacity);
+        size2 = size2 == null ? new double[capacity] : Arrays.copyOf(size2, capacity);
+    }
+
+    /**
+     * Метод возвращающий количество узлов последнего построенного дерева
+     * @return количество узлов
+     */
+    public int getNodeCount() {
+        return nodes;
+    }
+}
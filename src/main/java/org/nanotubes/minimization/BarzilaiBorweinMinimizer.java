@@ -0,0 +1,122 @@
+package org.nanotubes.minimization;
+
+import org.nanotubes.generation.Geom.ParticleSystem;
+
+import java.util.Arrays;
+
+/**
+ * Класс минимизирующий энергию градиентным спуском с шагом Барзилая-Борвейна: длина шага s*s/(s*y) подбирается
+ * по сдвигу частиц s и изменению градиента y на предыдущем шаге, поэтому шаг растет на пологих участках, а не только уменьшается.
+ * Шаг принимается, если энергия не больше наибольшей из MEMORY последних энергий (немонотонный поиск),
+ * иначе частицы возвращаются и длина шага делится пополам
+ */
+public class BarzilaiBorweinMinimizer extends AbstractMinimizer {
+    /**
+     * Количество последних значений энергии, с наибольшим из которых сравнивается энергия после шага
+     */
+    private static final int MEMORY = 10;
+    /**
+     * Доля ожидаемого по градиенту уменьшения энергии, которой должно быть достаточно для принятия шага
+     */
+    private static final double SUFFICIENT_DECREASE = 1e-4;
+    /**
+     * Наибольшее количество делений длины шага пополам на одном шаге
+     */
+    private static final int MAX_BACKTRACKS = 30;
+
+    /**
+     * Конструктор класса создающий минимизатор Барзилая-Борвейна с параметрами по умолчанию
+     */
+    public BarzilaiBorweinMinimizer() {
+    }
+
+    @Override
+    public MinimizerResult minimize(ForceField field, ParticleSystem system) {
+        int numberOfParticle = system.size();
+        double[] gradX = new double[numberOfParticle], gradZ = new double[numberOfParticle];
+        double[] oldGradX = new double[numberOfParticle], oldGradZ = new double[numberOfParticle];
+        double[] oldPhi = new double[numberOfParticle], oldZ = new double[numberOfParticle];
+        long evaluations = field.getEvaluations();
+        double limit = maxStep(field, system);
+        MetricSeries energies = new MetricSeries();
+
+        double energy = field.evaluate(system, gradX, gradZ);
+        energies.add(energy);
+        double[] recent = new double[MEMORY];
+        Arrays.fill(recent, energy);
+        double norm = ForceField.norm(gradX, gradZ);
+        // первый шаг сдвигает частицу с наибольшим градиентом на наибольший сдвиг
+        double gradientMax = 0;
+        for (int i = 0; i < numberOfParticle; i++) {
+            gradientMax = Math.max(gradientMax, Math.hypot(gradX[i], gradZ[i]));
+        }
+        double step = gradientMax > 0 ? limit / gradientMax : 1;
+
+        int iterations = 0;
+        while (norm > tolerance && iterations < maxIterations) {
+            iterations++;
+            for (int i = 0; i < numberOfParticle; i++) {
+                oldPhi[i] = system.getPhi(i);
+                oldZ[i] = system.getZ(i);
+            }
+            System.arraycopy(gradX, 0, oldGradX, 0, numberOfParticle);
+            System.arraycopy(gradZ, 0, oldGradZ, 0, numberOfParticle);
+            double reference = Arrays.stream(recent).max().orElse(energy);
+
+            boolean accepted = false;
+            double sg = 0;
+            for (int backtrack = 0; backtrack <= MAX_BACKTRACKS && !accepted; backtrack++) {
+                if (backtrack > 0) {
+                    for (int i = 0; i < numberOfParticle; i++) {
+                        system.move(i, oldPhi[i], oldZ[i]);
+                    }
+                    step /= 2;
+                }
+                displaceAll(field, system, oldGradX, oldGradZ, -step, limit);
+                double energyNew = field.evaluate(system, gradX, gradZ);
+                sg = 0;
+                for (int i = 0; i < numberOfParticle; i++) {
+                    sg += shiftX(system, i, oldPhi[i]) * oldGradX[i] + (system.getZ(i) - oldZ[i]) * oldGradZ[i];
+                }
+                if (energyNew <= reference + SUFFICIENT_DECREASE * sg) {
+                    accepted = true;
+                    energy = energyNew;
+                }
+            }
+            if (!accepted) {
+                // уменьшение энергии не найдено: частицы возвращаются в последнее принятое положение
+                for (int i = 0; i < numberOfParticle; i++) {
+                    system.move(i, oldPhi[i], oldZ[i]);
+                }
+                System.arraycopy(oldGradX, 0, gradX, 0, numberOfParticle);
+                System.arraycopy(oldGradZ, 0, gradZ, 0, numberOfParticle);
+                break;
+            }
+            energies.add(energy);
+            recent[iterations % MEMORY] = energy;
+            norm = ForceField.norm(gradX, gradZ);
+
+            double ss = 0, sy = 0;
+            for (int i = 0; i < numberOfParticle; i++) {
+                double sx = shiftX(system, i, oldPhi[i]), sz = system.getZ(i) - oldZ[i];
+                ss += sx * sx + sz * sz;
+                sy += sx * (gradX[i] - oldGradX[i]) + sz * (gradZ[i] - oldGradZ[i]);
+            }
+            step = sy > 0 ? ss / sy : 2 * step;
+        }
+        return new MinimizerResult(iterations, field.getEvaluations() - evaluations, norm, norm <= tolerance, energies);
+    }
+
+    /**
+     * Метод возвращающий сдвиг частицы вдоль развертки с учетом перехода через линию склейки
+     * @param system координаты частиц
+     * @param i номер частицы
+     * @param oldPhi угол phi частицы до сдвига
+     * @return сдвиг вдоль развертки
+     */
+    private static double shiftX(ParticleSystem system, int i, double oldPhi) {
+        double dPhi = system.getPhi(i) - oldPhi;
+        dPhi -= 2 * Math.PI * Math.rint(dPhi / (2 * Math.PI));
+        return dPhi * system.getRho(i);
+    }
+}
@@ -0,0 +1,169 @@
+package org.nanotubes.minimization;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Класс описывающий равномерную сетку ячеек на плоскости развертки цилиндра (phi*rho, z)
+ * По координате phi сетка замкнута (период 2pi*rho), по координате z ограничена высотой цилиндра.
+ * Каждая ячейка хранит двусвязный список номеров частиц, поэтому перемещение частицы обновляет сетку за O(1)
+ */
+public class CellList {
+    /**
+     * Признак конца списка частиц в ячейке
+     */
+    private static final int END = -1;
+
+    /**
+     * Нижняя граница цилиндра по координате z
+     */
+    private final double zMin;
+    /**
+     * Количество ячеек по ширине и высоте развертки
+     */
+    private final int cellsX, cellsZ;
+    /**
+     * Размеры ячейки по ширине и высоте развертки
+     */
+    private final double cellWidth, cellHeight;
+    /**
+     * Первая частица в каждой ячейке
+     */
+    private final int[] head;
+    /**
+     * Следующая и предыдущая частицы в той же ячейке
+     */
+    private final int[] next, prev;
+    /**
+     * Ячейка, в которой находится частица
+     */
+    private final int[] cellOf;
+
+    /**
+     * Конструктор класса создающий пустую сетку
+     * @param width ширина развертки цилиндра (2pi*rho)
+     * @param height высота цилиндра
+     * @param cutoff радиус обрезки взаимодействия, размер ячейки не меньше него
+     * @param numberOfParticle количество частиц
+     */
+    public CellList(double width, double height, double cutoff, int numberOfParticle) {
+        zMin = -height / 2;
+        cellsX = Math.max(1, (int) (width / cutoff));
+        cellsZ = Math.max(1, (int) (height / cutoff));
+        cellWidth = width / cellsX;
+        cellHeight = height / cellsZ;
+        head = new int[cellsX * cellsZ];
+        next = new int[numberOfParticle];
+        prev = new int[numberOfParticle];
+        cellOf = new int[numberOfParticle];
+        Arrays.fill(head, END);
+    }
+
+    /**
+     * Метод возвращающий номер ячейки, в которую попадает точка
+     * @param x координата точки вдоль развертки (phi*rho)
+     * @param z координата z точки
+     * @return номер ячейки
+     */
+    public int cellOf(double x, double z) {
+        int cx = Math.floorMod((int) Math.floor(x / cellWidth), cellsX);
+        int cz = Math.min(cellsZ - 1, Math.max(0, (int) ((z - zMin) / cellHeight)));
+        return cz * cellsX + cx;
+    }
+
+    /**
+     * Метод добавляющий частицу в сетку
+     * @param i номер частицы
+     * @param x координата частицы вдоль развертки (phi*rho)
+     * @param z координата z частицы
+     */
+    public void insert(int i, double x, double z) {
+        int cell = cellOf(x, z);
+        cellOf[i] = cell;
+        prev[i] = END;
+        next[i] = head[cell];
+        if (head[cell] != END) {
+            prev[head[cell]] = i;
+        }
+        head[cell] = i;
+    }
+
+    /**
+     * Метод перемещающий частицу в ячейку, соответствующую её новым координатам
+     * @param i номер частицы
+     * @param x новая координата частицы вдоль развертки (phi*rho)
+     * @param z новая координата z частицы
+     */
+    public void move(int i, double x, double z) {
+        if (cellOf(x, z) == cellOf[i]) {
+            return;
+        }
+        if (prev[i] != END) {
+            next[prev[i]] = next[i];
+        } else {
+            head[cellOf[i]] = next[i];
+        }
+        if (next[i] != END) {
+            prev[next[i]] = prev[i];
+        }
+        insert(i, x, z);
+    }
+
+    /**
+     * Метод записывающий номера частиц из ячеек, соседних с ячейкой точки (включая её саму), с учетом замкнутости по phi
+     * @param x координата точки вдоль развертки (phi*rho)
+     * @param z координата z точки
+     * @param buffer массив для номеров частиц длиной не меньше количества частиц
+     * @return количество записанных частиц
+     */
+    public int neighbours(double x, double z, int[] buffer) {
+        int cell = cellOf(x, z);
+        int cx = cell % cellsX;
+        int cz = cell / cellsX;
+        int fromX = cellsX <= 3 ? 0 : cx - 1;
+        int toX = cellsX <= 3 ? cellsX - 1 : cx + 1;
+        int count = 0;
+        for (int iz = Math.max(0, cz - 1); iz <= Math.min(cellsZ - 1, cz + 1); iz++) {
+            for (int ix = fromX; ix <= toX; ix++) {
+                for (int j = head[iz * cellsX + Math.floorMod(ix, cellsX)]; j != END; j = next[j]) {
+                    buffer[count++] = j;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Метод записывающий списки частиц в ячейках (для контрольной точки: от порядка частиц в списках зависит порядок суммирования)
+     * @param out поток записи
+     * @throws IOException ошибка записи
+     */
+    void write(DataOutput out) throws IOException {
+        for (int value : head) {
+            out.writeInt(value);
+        }
+        for (int i = 0; i < cellOf.length; i++) {
+            out.writeInt(next[i]);
+            out.writeInt(prev[i]);
+            out.writeInt(cellOf[i]);
+        }
+    }
+
+    /**
+     * Метод читающий списки частиц в ячейках, записанные методом write для сетки тех же размеров
+     * @param in поток чтения
+     * @throws IOException ошибка чтения
+     */
+    void read(DataInput in) throws IOException {
+        for (int cell = 0; cell < head.length; cell++) {
+            head[cell] = in.readInt();
+        }
+        for (int i = 0; i < cellOf.length; i++) {
+            next[i] = in.readInt();
+            prev[i] = in.readInt();
+            cellOf[i] = in.readInt();
+        }
+    }
+}
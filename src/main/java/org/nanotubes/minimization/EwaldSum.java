@@ -0,0 +1,531 @@
+package org.nanotubes.minimization;
+
+import org.nanotubes.generation.Geom.ParticleSystem;
+import org.nanotubes.generation.Geom.Tube;
+
+import java.util.Arrays;
+
+/**
+ * Класс вычисляющий энергию взаимодействия 1/r (degree = 1) всех пар частиц с учетом всех образов частиц
+ * на развертке цилиндра, периодической по x = phi*rho с периодом 2pi*R, и её градиент (одномерно-периодическая сумма Эвальда).
+ * Сумма образов 1/r расходится логарифмически, поэтому энергия пары определяется как 1/r + сумма по образам n != 0
+ * величин 1/|r + n*L| - 1/(|n|*L); при больших расстояниях по z она равна -(2/L)*(ln(|z|/(2L)) + gamma).
+ * Взаимодействие делится на две части: erfc(alpha*r)/r, быстро убывающая с расстоянием, суммируется по соседям
+ * в радиусе cutoff по сетке ячеек, а гладкая часть erf(alpha*r)/r вычисляется на сетке: заряды частиц
+ * раскладываются по узлам B-сплайнами порядка ORDER, сетка периодична по x и удвоена нулями по z (непериодическое направление),
+ * свертка с ядром выполняется быстрым преобразованием Фурье, как в методе SPME (со сглаживанием B-сплайнов,
+ * скомпенсированным в ядре). Время вычисления растет как N*log(N): число соседей в радиусе cutoff и число узлов сетки
+ * на частицу не зависят от N. Точность tolerance задает alpha = sqrt(-ln(tolerance))/cutoff и шаг сетки
+ */
+public class EwaldSum {
+    /**
+     * Порядок B-сплайнов раскладки зарядов по сетке
+     */
+    static final int ORDER = 6;
+    /**
+     * Дополнительные узлы сетки по z с каждой стороны цилиндра, на которых затухает компенсация сглаживания B-сплайнов
+     */
+    private static final int MARGIN = 40;
+    /**
+     * Количество интервалов таблицы erfc
+     */
+    private static final int TABLE_SIZE = 4096;
+    /**
+     * Постоянная Эйлера
+     */
+    private static final double EULER_GAMMA = 0.5772156649015329;
+    /**
+     * Множитель 2/sqrt(pi)
+     */
+    private static final double TWO_OVER_SQRT_PI = 2 / Math.sqrt(Math.PI);
+
+    /**
+     * Длина окружности цилиндра (период по x)
+     */
+    private final double width;
+    /**
+     * Высота цилиндра
+     */
+    private final double heightTube;
+    /**
+     * Радиус прямой суммы erfc(alpha*r)/r
+     */
+    private final double cutoff;
+    /**
+     * Параметр разделения взаимодействия на прямую и сеточную части
+     */
+    private final double alpha;
+    /**
+     * Количество узлов сетки по x
+     */
+    private final int meshX;
+    /**
+     * Количество узлов удвоенной сетки по z
+     */
+    private final int meshZ;
+    /**
+     * Шаги сетки по x и z
+     */
+    private final double stepX, stepZ;
+    /**
+     * Координата z нулевого узла сетки
+     */
+    private final double zMin;
+    /**
+     * Фурье-образ ядра гладкой части, деленный на сглаживание B-сплайнов и на meshZ (индекс m*meshZ + l)
+     */
+    private final double[] kernel;
+    /**
+     * Значение гладкой части в нуле (взаимодействие частицы с собой, вычитается из сеточной энергии)
+     */
+    private final double selfEnergy;
+    /**
+     * Разность энергии пары по определению через образы и энергии, вычисленной разделением на части
+     */
+    private final double shift;
+    /**
+     * Таблица значений erfc
+     */
+    private final double[] erfcTable;
+    /**
+     * Таблица производных erfc
+     */
+    private final double[] erfcSlope;
+    /**
+     * Шаг таблицы erfc
+     */
+    private final double tableStep;
+    /**
+     * Преобразования Фурье по x и по z
+     */
+    private final Fft fftX, fftZ;
+    /**
+     * Действительные и мнимые части значений на сетке
+     */
+    private final double[] gridRe, gridIm;
+    /**
+     * Сетка ячеек для поиска соседей прямой суммы
+     */
+    private CellList cellList;
+    /**
+     * Буфер для номеров соседних частиц
+     */
+    private int[] neighbours;
+    /**
+     * Веса B-сплайнов частиц по x и z и их производные (индекс i*ORDER + j)
+     */
+    private double[] weightX, weightZ, slopeX, slopeZ;
+    /**
+     * Номера узлов сетки, с которых начинаются веса частиц
+     */
+    private int[] baseX, baseZ;
+
+    /**
+     * Конструктор класса создающий сумму Эвальда для цилиндра: вычисляется ядро сеточной части
+     * @param tube параметры цилиндра
+     * @param cutoff радиус прямой суммы (не больше половины длины окружности цилиндра)
+     * @param tolerance относительная точность энергии и сил (от 0 до 1)
+     */
+    public EwaldSum(Tube tube, double cutoff, double tolerance) {
+        if (!(tolerance > 0 && tolerance < 1)) {
+            throw new IllegalArgumentException("tolerance must be between 0 and 1: " + tolerance);
+        }
+        width = 2 * Math.PI * tube.getRadius();
+        heightTube = tube.getHeight();
+        this.cutoff = Math.min(cutoff, width / 2);
+        if (!(this.cutoff > 0)) {
+            throw new IllegalArgumentException("cutoff must be positive: " + cutoff);
+        }
+        double s = Math.sqrt(-Math.log(tolerance));
+        alpha = s / this.cutoff;
+        // сетка передает гармоники с волновым числом до 2*alpha*s (более высокие меньше tolerance), а ошибка интерполяции
+        // B-сплайнами гармоники k, порядка (k*h/pi)^ORDER, умноженная на её вес exp(-k^2/(4*alpha^2)), не больше tolerance
+        double step = Math.min(Math.PI / (2 * alpha * s), 1.4 * Math.pow(10 * tolerance, 1.0 / ORDER) / alpha);
+        meshX = powerOfTwo(Math.max(2 * ORDER, (int) Math.ceil(width / step)));
+        stepX = width / meshX;
+        // узлы, добавленные до степени двойки, уменьшают шаг по z
+        int pointsZ = (int) Math.ceil(heightTube / step) + 2 * (ORDER + MARGIN);
+        meshZ = powerOfTwo(2 * pointsZ);
+        stepZ = heightTube / (meshZ / 2 - 2 * (ORDER + MARGIN));
+        zMin = -heightTube / 2 - (ORDER + MARGIN) * stepZ;
+        fftX = new Fft(meshX);
+        fftZ = new Fft(meshZ);
+        gridRe = new double[meshX * meshZ];
+        gridIm = new double[meshX * meshZ];
+        kernel = buildKernel();
+
+        double self = 0;
+        for (int m = -meshX / 2; m < meshX / 2; m++) {
+            if (m != 0) {
+                double k = 2 * Math.PI * m / width;
+                self += e1(k * k / (4 * alpha * alpha));
+            }
+        }
+        selfEnergy = self / width;
+        shift = 2 / width * (Math.log(2 * alpha * width) - EULER_GAMMA / 2);
+
+        tableStep = 1.01 * s / TABLE_SIZE;
+        erfcTable = new double[TABLE_SIZE + 2];
+        erfcSlope = new double[TABLE_SIZE + 2];
+        for (int i = 0; i < erfcTable.length; i++) {
+            double x = i * tableStep;
+            erfcTable[i] = erfc(x);
+            erfcSlope[i] = -TWO_OVER_SQRT_PI * Math.exp(-x * x);
+        }
+    }
+
+    /**
+     * Метод вычисляющий ядро сеточной части: для каждой гармоники по x значения на удвоенной сетке по z
+     * переводятся преобразованием Фурье по z и делятся на сглаживание B-сплайнов по обоим направлениям
+     * @return Фурье-образ ядра
+     */
+    private double[] buildKernel() {
+        double[] bx = smoothing(meshX), bz = smoothing(meshZ);
+        double[] result = new double[meshX * meshZ];
+        double[] re = new double[meshZ], im = new double[meshZ];
+        for (int m = 0; m <= meshX / 2; m++) {
+            double k = 2 * Math.PI * m / width;
+            for (int l = 0; l <= meshZ / 2; l++) {
+                re[l] = smoothPart(k, l * stepZ) / width;
+                if (l > 0) {
+                    re[meshZ - l] = re[l];
+                }
+            }
+            Arrays.fill(im, 0);
+            fftZ.transform(re, im, 0, 1, false);
+            for (int l = 0; l < meshZ; l++) {
+                double value = re[l] / (meshZ * bx[m] * bz[l]);
+                result[m * meshZ + l] = value;
+                if (m > 0 && m < meshX / 2) {
+                    result[(meshX - m) * meshZ + l] = value;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Метод возвращающий квадраты модулей Фурье-образа B-сплайна в узлах сетки (сглаживание раскладки зарядов)
+     * @param size количество узлов сетки
+     * @return квадраты модулей для каждой гармоники
+     */
+    private static double[] smoothing(int size) {
+        double[] values = new double[ORDER], slopes = new double[ORDER];
+        bspline(0, values, slopes, 0);
+        double[] result = new double[size];
+        for (int m = 0; m < size; m++) {
+            double re = 0, im = 0;
+            for (int j = 0; j < ORDER - 1; j++) {
+                double angle = 2 * Math.PI * m * j / size;
+                re += values[j + 1] * Math.cos(angle);
+                im += values[j + 1] * Math.sin(angle);
+            }
+            result[m] = re * re + im * im;
+        }
+        return result;
+    }
+
+    /**
+     * Метод возвращающий коэффициент ряда Фурье по x гладкой части суммы образов erf(alpha*r)/r (умноженный на L):
+     * 2 * интеграл от 0 до alpha по dt/t функции exp(-t^2*z^2 - k^2/(4t^2)); для k = 0 расходящаяся постоянная
+     * отбрасывается и коэффициент равен -Ein(alpha^2*z^2)
+     * @param k волновое число
+     * @param z расстояние по z
+     * @return коэффициент ряда
+     */
+    private double smoothPart(double k, double z) {
+        double a = alpha * alpha * z * z;
+        if (k == 0) {
+            return -ein(a);
+        }
+        double b = k * k / (4 * alpha * alpha);
+        if (b > 40) {
+            return 0;
+        }
+        // замена t = alpha*exp(-u): подынтегральная функция exp(-a*exp(-2u) - b*exp(2u)) гладкая и быстро убывает
+        double from = a > 40 ? 0.5 * Math.log(a / 40) : 0;
+        double to = 0.5 * Math.log(40 / b);
+        if (to <= from) {
+            return 0;
+        }
+        int intervals = 2 * (int) Math.ceil((to - from) / 0.02);
+        double h = (to - from) / intervals;
+        double sum = 0;
+        for (int i = 0; i <= intervals; i++) {
+            double u = from + i * h;
+            double value = Math.exp(-a * Math.exp(-2 * u) - b * Math.exp(2 * u));
+            sum += (i == 0 || i == intervals ? 1 : (i & 1) == 1 ? 4 : 2) * value;
+        }
+        return 2 * sum * h / 3;
+    }
+
+    /**
+     * Метод вычисляющий энергию всех пар частиц с учетом образов и добавляющий её градиент, умноженный на factor
+     * @param system координаты частиц
+     * @param factor множитель энергии пар (ForceField учитывает каждую пару дважды)
+     * @param gradX массив производных энергии по x = phi*rho, к которому добавляется градиент
+     * @param gradZ массив производных энергии по z, к которому добавляется градиент
+     * @return энергия пар, умноженная на factor
+     */
+    public double evaluate(ParticleSystem system, double factor, double[] gradX, double[] gradZ) {
+        int numberOfParticle = system.size();
+        prepare(system);
+        double energy = 0;
+        double cutoff2 = cutoff * cutoff;
+        for (int i = 0; i < numberOfParticle; i++) {
+            double x = system.getPhi(i) * system.getRho(i);
+            double z = system.getZ(i);
+            int count = cellList.neighbours(x, z, neighbours);
+            for (int k = 0; k < count; k++) {
+                int j = neighbours[k];
+                if (j <= i) {
+                    continue;
+                }
+                double dx = x - system.getPhi(j) * system.getRho(j);
+                dx -= width * Math.rint(dx / width);
+                double dz = z - system.getZ(j);
+                double r2 = dx * dx + dz * dz;
+                if (r2 > cutoff2) {
+                    continue;
+                }
+                double r = Math.sqrt(r2);
+                double s = alpha * r;
+                double energyOfPair = erfcTabulated(s) / r;
+                double force = factor * (energyOfPair + TWO_OVER_SQRT_PI * alpha * Math.exp(-s * s)) / r2;
+                energy += energyOfPair;
+                gradX[i] -= force * dx;
+                gradZ[i] -= force * dz;
+                gradX[j] += force * dx;
+                gradZ[j] += force * dz;
+            }
+        }
+
+        // раскладка зарядов по сетке
+        Arrays.fill(gridRe, 0);
+        Arrays.fill(gridIm, 0);
+        for (int i = 0; i < numberOfParticle; i++) {
+            for (int jx = 0; jx < ORDER; jx++) {
+                int row = Math.floorMod(baseX[i] - jx, meshX) * meshZ;
+                double wx = weightX[i * ORDER + jx];
+                for (int jz = 0; jz < ORDER; jz++) {
+                    gridRe[row + baseZ[i] - jz] += wx * weightZ[i * ORDER + jz];
+                }
+            }
+        }
+        // свертка с ядром: прямое преобразование, умножение на ядро, обратное преобразование
+        for (int m = 0; m < meshX; m++) {
+            fftZ.transform(gridRe, gridIm, m * meshZ, 1, false);
+        }
+        for (int l = 0; l < meshZ; l++) {
+            fftX.transform(gridRe, gridIm, l, meshZ, false);
+        }
+        for (int index = 0; index < kernel.length; index++) {
+            gridRe[index] *= kernel[index];
+            gridIm[index] *= kernel[index];
+        }
+        for (int l = 0; l < meshZ; l++) {
+            fftX.transform(gridRe, gridIm, l, meshZ, true);
+        }
+        for (int m = 0; m < meshX; m++) {
+            fftZ.transform(gridRe, gridIm, m * meshZ, 1, true);
+        }
+        // потенциал в положениях частиц и его градиент
+        double mesh = 0;
+        for (int i = 0; i < numberOfParticle; i++) {
+            double potential = 0, dPotentialX = 0, dPotentialZ = 0;
+            for (int jx = 0; jx < ORDER; jx++) {
+                int row = Math.floorMod(baseX[i] - jx, meshX) * meshZ;
+                double wx = weightX[i * ORDER + jx], sx = slopeX[i * ORDER + jx];
+                for (int jz = 0; jz < ORDER; jz++) {
+                    double value = gridRe[row + baseZ[i] - jz];
+                    potential += wx * weightZ[i * ORDER + jz] * value;
+                    dPotentialX += sx * weightZ[i * ORDER + jz] * value;
+                    dPotentialZ += wx * slopeZ[i * ORDER + jz] * value;
+                }
+            }
+            mesh += potential;
+            gradX[i] += factor * dPotentialX / stepX;
+            gradZ[i] += factor * dPotentialZ / stepZ;
+        }
+        energy += mesh / 2 - numberOfParticle * selfEnergy / 2
+                + (double) numberOfParticle * (numberOfParticle - 1) / 2 * shift;
+        return factor * energy;
+    }
+
+    /**
+     * Метод раскладывающий частицы по сетке ячеек и вычисляющий веса B-сплайнов частиц
+     * @param system координаты частиц
+     */
+    private void prepare(ParticleSystem system) {
+        int numberOfParticle = system.size();
+        if (cellList == null || neighbours.length != numberOfParticle) {
+            cellList = new CellList(width, heightTube, cutoff, numberOfParticle);
+            neighbours = new int[numberOfParticle];
+            weightX = new double[numberOfParticle * ORDER];
+            weightZ = new double[numberOfParticle * ORDER];
+            slopeX = new double[numberOfParticle * ORDER];
+            slopeZ = new double[numberOfParticle * ORDER];
+            baseX = new int[numberOfParticle];
+            baseZ = new int[numberOfParticle];
+            for (int i = 0; i < numberOfParticle; i++) {
+                cellList.insert(i, system.getPhi(i) * system.getRho(i), system.getZ(i));
+            }
+        } else {
+            for (int i = 0; i < numberOfParticle; i++) {
+                cellList.move(i, system.getPhi(i) * system.getRho(i), system.getZ(i));
+            }
+        }
+        for (int i = 0; i < numberOfParticle; i++) {
+            double u = system.getPhi(i) * system.getRho(i) / stepX;
+            double floor = Math.floor(u);
+            baseX[i] = (int) floor;
+            bspline(u - floor, weightX, slopeX, i * ORDER);
+            u = (system.getZ(i) - zMin) / stepZ;
+            floor = Math.floor(u);
+            baseZ[i] = (int) floor;
+            bspline(u - floor, weightZ, slopeZ, i * ORDER);
+        }
+    }
+
+    /**
+     * Метод вычисляющий веса B-сплайна порядка ORDER и их производные для узлов base, base - 1, ..., base - ORDER + 1
+     * @param fraction дробная часть координаты точки в шагах сетки
+     * @param weights массив весов
+     * @param slopes массив производных весов по координате в шагах сетки
+     * @param offset индекс первого веса в массивах
+     */
+    static void bspline(double fraction, double[] weights, double[] slopes, int offset) {
+        weights[offset] = fraction;
+        weights[offset + 1] = 1 - fraction;
+        for (int n = 3; n <= ORDER; n++) {
+            if (n == ORDER) {
+                for (int j = 0; j < n; j++) {
+                    slopes[offset + j] = (j <= n - 2 ? weights[offset + j] : 0) - (j >= 1 ? weights[offset + j - 1] : 0);
+                }
+            }
+            for (int j = n - 1; j >= 0; j--) {
+                double left = j <= n - 2 ? (fraction + j) * weights[offset + j] : 0;
+                double right = j >= 1 ? (n - fraction - j) * weights[offset + j - 1] : 0;
+                weights[offset + j] = (left + right) / (n - 1);
+            }
+        }
+    }
+
+    /**
+     * Метод возвращающий наименьшую степень двойки, не меньшую заданного числа
+     * @param n число (больше 1)
+     * @return степень двойки
+     */
+    private static int powerOfTwo(int n) {
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * Метод возвращающий erfc по таблице с кубической интерполяцией Эрмита
+     * @param x аргумент (не больше sqrt(-ln(tolerance)))
+     * @return erfc(x)
+     */
+    private double erfcTabulated(double x) {
+        double u = x / tableStep;
+        int i = (int) u;
+        double t = u - i;
+        double t2 = t * t, t3 = t2 * t;
+        return (2 * t3 - 3 * t2 + 1) * erfcTable[i] + (t3 - 2 * t2 + t) * tableStep * erfcSlope[i]
+                + (3 * t2 - 2 * t3) * erfcTable[i + 1] + (t3 - t2) * tableStep * erfcSlope[i + 1];
+    }
+
+    /**
+     * Метод вычисляющий дополнительную функцию ошибок: рядом Тейлора для erf при x < 2 и цепной дробью при x >= 2
+     * @param x неотрицательный аргумент
+     * @return erfc(x)
+     */
+    static double erfc(double x) {
+        if (x < 2) {
+            double term = x, sum = x;
+            for (int n = 1; Math.abs(term) > 1e-17 * Math.abs(sum); n++) {
+                term *= -x * x / n;
+                sum += term / (2 * n + 1);
+            }
+            return 1 - TWO_OVER_SQRT_PI * sum;
+        }
+        double fraction = x;
+        for (int n = 60; n >= 1; n--) {
+            fraction = x + n / 2.0 / fraction;
+        }
+        return Math.exp(-x * x) / (Math.sqrt(Math.PI) * fraction);
+    }
+
+    /**
+     * Метод вычисляющий интегральную показательную функцию E1(x) = интеграл от x до бесконечности exp(-t)/t dt
+     * @param x положительный аргумент
+     * @return E1(x)
+     */
+    static double e1(double x) {
+        if (x < 1) {
+            return -EULER_GAMMA - Math.log(x) + ein(x);
+        }
+        // цепная дробь методом Ленца
+        double b = x + 1, c = 1 / Double.MIN_NORMAL, d = 1 / b, h = d;
+        for (int i = 1; i < 1000; i++) {
+            double a = -(double) i * i;
+            b += 2;
+            d = 1 / (a * d + b);
+            c = b + a / c;
+            double delta = c * d;
+            h *= delta;
+            if (Math.abs(delta - 1) < 1e-16) {
+                break;
+            }
+        }
+        return h * Math.exp(-x);
+    }
+
+    /**
+     * Метод вычисляющий функцию Ein(x) = интеграл от 0 до x (1 - exp(-t))/t dt = E1(x) + ln(x) + gamma
+     * @param x неотрицательный аргумент
+     * @return Ein(x)
+     */
+    static double ein(double x) {
+        if (x < 1) {
+            double term = 1, sum = 0;
+            for (int n = 1; n < 40; n++) {
+                term *= -x / n;
+                sum -= term / n;
+            }
+            return sum;
+        }
+        return e1(x) + Math.log(x) + EULER_GAMMA;
+    }
+
+    /**
+     * Метод возвращающий радиус прямой суммы
+     * @return радиус прямой суммы
+     */
+    public double getCutoff() {
+        return cutoff;
+    }
+
+    /**
+     * Метод возвращающий параметр разделения взаимодействия
+     * @return alpha
+     */
+    public double getAlpha() {
+        return alpha;
+    }
+
+    /**
+     * Метод возвращающий количество узлов сетки по x
+     * @return количество узлов
+     */
+    public int getMeshX() {
+        return meshX;
+    }
+
+    /**
+     * Метод возвращающий количество узлов удвоенной сетки по z
+     * @return количество узлов
+     */
+    public int getMeshZ() {
+        return meshZ;
+    }
+}
@@ -0,0 +1,83 @@
+package org.nanotubes.minimization;
+
+/**
+ * Класс выполняющий быстрое преобразование Фурье по основанию 2 для комплексных массивов заданной длины
+ * (длина - степень двойки). Прямое преобразование вычисляет сумму x_n*exp(-2pi*i*k*n/N), обратное - сумму с exp(+2pi*i*k*n/N)
+ * без деления на N
+ */
+final class Fft {
+    /**
+     * Длина преобразования
+     */
+    private final int n;
+    /**
+     * Косинусы и синусы углов 2pi*k/N для k от 0 до N/2
+     */
+    private final double[] cos, sin;
+    /**
+     * Перестановка индексов с обратным порядком битов
+     */
+    private final int[] reverse;
+
+    /**
+     * Конструктор класса создающий преобразование заданной длины
+     * @param n длина преобразования (степень двойки)
+     */
+    Fft(int n) {
+        if (n <= 0 || (n & (n - 1)) != 0) {
+            throw new IllegalArgumentException("FFT length must be a power of two: " + n);
+        }
+        this.n = n;
+        cos = new double[n / 2 + 1];
+        sin = new double[n / 2 + 1];
+        for (int k = 0; k <= n / 2; k++) {
+            cos[k] = Math.cos(2 * Math.PI * k / n);
+            sin[k] = Math.sin(2 * Math.PI * k / n);
+        }
+        reverse = new int[n];
+        int bits = Integer.numberOfTrailingZeros(n);
+        for (int k = 0; k < n; k++) {
+            reverse[k] = bits == 0 ? 0 : Integer.reverse(k) >>> (32 - bits);
+        }
+    }
+
+    /**
+     * Метод выполняющий преобразование на месте над элементами offset, offset + stride, ..., offset + (N-1)*stride
+     * (строка или столбец двумерной сетки)
+     * @param re действительные части
+     * @param im мнимые части
+     * @param offset индекс первого элемента
+     * @param stride расстояние между соседними элементами
+     * @param inverse истина - обратное преобразование
+     */
+    void transform(double[] re, double[] im, int offset, int stride, boolean inverse) {
+        for (int k = 0; k < n; k++) {
+            int j = reverse[k];
+            if (j > k) {
+                int a = offset + k * stride, b = offset + j * stride;
+                double t = re[a];
+                re[a] = re[b];
+                re[b] = t;
+                t = im[a];
+                im[a] = im[b];
+                im[b] = t;
+            }
+        }
+        double sign = inverse ? 1 : -1;
+        for (int size = 2; size <= n; size <<= 1) {
+            int half = size >> 1, step = n / size;
+            for (int start = 0; start < n; start += size) {
+                for (int k = 0; k < half; k++) {
+                    double wr = cos[k * step], wi = sign * sin[k * step];
+                    int a = offset + (start + k) * stride, b = a + half * stride;
+                    double tr = wr * re[b] - wi * im[b];
+                    double ti = wr * im[b] + wi * re[b];
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+}
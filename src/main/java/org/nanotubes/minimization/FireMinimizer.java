@@ -0,0 +1,100 @@
+package org.nanotubes.minimization;
+
+import org.nanotubes.generation.Geom.ParticleSystem;
+
+import java.util.Arrays;
+
+/**
+ * Класс минимизирующий энергию методом FIRE (Fast Inertial Relaxation Engine): частицы движутся с инерцией под действием
+ * сил (минус градиент), скорость поворачивается к направлению силы, а шаг по времени растет, пока движение идет
+ * по направлению силы, и уменьшается с остановкой частиц, как только мощность сил становится отрицательной.
+ * Один шаг - одно вычисление энергии и градиента
+ */
+public class FireMinimizer extends AbstractMinimizer {
+    /**
+     * Количество шагов с положительной мощностью, после которых шаг по времени начинает расти
+     */
+    private static final int N_MIN = 5;
+    /**
+     * Множитель увеличения шага по времени
+     */
+    private static final double F_INC = 1.1;
+    /**
+     * Множитель уменьшения шага по времени
+     */
+    private static final double F_DEC = 0.5;
+    /**
+     * Начальная доля поворота скорости к направлению силы
+     */
+    private static final double ALPHA_START = 0.1;
+    /**
+     * Множитель уменьшения доли поворота скорости
+     */
+    private static final double F_ALPHA = 0.99;
+    /**
+     * Наибольший шаг по времени относительно шага, сдвигающего частицу с градиентом, равным точности, на наибольший сдвиг
+     */
+    private static final double DT_MAX_FACTOR = 10;
+
+    /**
+     * Конструктор класса создающий минимизатор FIRE с параметрами по умолчанию
+     */
+    public FireMinimizer() {
+    }
+
+    @Override
+    public MinimizerResult minimize(ForceField field, ParticleSystem system) {
+        int numberOfParticle = system.size();
+        double[] gradX = new double[numberOfParticle], gradZ = new double[numberOfParticle];
+        double[] velocityX = new double[numberOfParticle], velocityZ = new double[numberOfParticle];
+        long evaluations = field.getEvaluations();
+        double limit = maxStep(field, system);
+        MetricSeries energies = new MetricSeries();
+
+        energies.add(field.evaluate(system, gradX, gradZ));
+        double norm = ForceField.norm(gradX, gradZ);
+        // начальный шаг по времени сдвигает частицу со среднеквадратичной силой на наибольший сдвиг
+        double dt = norm > 0 ? Math.sqrt(limit / norm) : 1;
+        // наибольший шаг не зависит от начального градиента: одно перекрытие частиц в начальной конфигурации
+        // иначе ограничило бы шаг так, что около минимума частицы почти не движутся
+        double dtMax = DT_MAX_FACTOR * Math.sqrt(limit / tolerance);
+        double alpha = ALPHA_START;
+        int positive = 0;
+
+        int iterations = 0;
+        while (norm > tolerance && iterations < maxIterations) {
+            iterations++;
+            double power = 0, velocity2 = 0, force2 = 0;
+            for (int i = 0; i < numberOfParticle; i++) {
+                power -= gradX[i] * velocityX[i] + gradZ[i] * velocityZ[i];
+                velocity2 += velocityX[i] * velocityX[i] + velocityZ[i] * velocityZ[i];
+                force2 += gradX[i] * gradX[i] + gradZ[i] * gradZ[i];
+            }
+            if (power > 0) {
+                double mix = alpha * Math.sqrt(velocity2 / force2);
+                for (int i = 0; i < numberOfParticle; i++) {
+                    velocityX[i] = (1 - alpha) * velocityX[i] - mix * gradX[i];
+                    velocityZ[i] = (1 - alpha) * velocityZ[i] - mix * gradZ[i];
+                }
+                if (++positive > N_MIN) {
+                    dt = Math.min(dt * F_INC, dtMax);
+                    alpha *= F_ALPHA;
+                }
+            } else {
+                Arrays.fill(velocityX, 0);
+                Arrays.fill(velocityZ, 0);
+                dt *= F_DEC;
+                alpha = ALPHA_START;
+                positive = 0;
+            }
+            for (int i = 0; i < numberOfParticle; i++) {
+                velocityX[i] -= dt * gradX[i];
+                velocityZ[i] -= dt * gradZ[i];
+            }
+            displaceAll(field, system, velocityX, velocityZ, dt, limit);
+            energies.add(field.evaluate(system, gradX, gradZ));
+            norm = ForceField.norm(gradX, gradZ);
+        }
+        return new MinimizerResult(iterations, field.getEvaluations() - evaluations, norm, norm <= tolerance, energies);
+    }
+}
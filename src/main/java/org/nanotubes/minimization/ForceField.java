@@ -0,0 +1,266 @@
+package org.nanotubes.minimization;
+
+import org.nanotubes.generation.Geom.ParticleSystem;
+import org.nanotubes.generation.Geom.Tube;
+
+/**
+ * Класс вычисляющий энергию системы частиц и её градиент по координатам частиц на развертке цилиндра (x = phi*rho, z).
+ * Энергия определяется так же, как в Minimization: каждая пара частиц учитывается дважды, взаимодействие со стенками - один раз,
+ * расстояние вдоль развертки берется до ближайшего образа частицы с периодом 2pi*rho, поэтому энергия непрерывна
+ * при переходе через линию склейки. Без обрезки проекция силы на x меняет знак, когда пара проходит через половину
+ * окружности, поэтому градиент там разрывен и точность минимизаторов не может быть меньше этого скачка
+ * (для 1/r^degree - порядка degree/(pi*R)^(degree+1)). Используется минимизаторами Minimizer
+ */
+public class ForceField {
+    /**
+     * Потенциал взаимодействия пары частиц
+     */
+    private final PairPotential pair;
+    /**
+     * Потенциал взаимодействия частицы с краем цилиндра (по квадрату расстояния до края)
+     */
+    private final PairPotential wall;
+    /**
+     * Высота цилиндра
+     */
+    private final double heightTube;
+    /**
+     * Длина окружности цилиндра (период по x)
+     */
+    private final double width;
+    /**
+     * Радиус обрезки взаимодействия (0 - учитываются все пары частиц)
+     */
+    private double cutoff;
+    /**
+     * Квадрат радиуса обрезки взаимодействия
+     */
+    private double cutoff2 = Double.POSITIVE_INFINITY;
+    /**
+     * Сетка ячеек для поиска соседей в режиме обрезки
+     */
+    private CellList cellList;
+    /**
+     * Буфер для номеров соседних частиц
+     */
+    private int[] neighbours;
+    /**
+     * Точность суммы Эвальда (0 - сумма Эвальда не используется)
+     */
+    private double ewaldTolerance;
+    /**
+     * Сумма Эвальда для взаимодействия 1/r с учетом всех образов частиц (создается при первом вычислении)
+     */
+    private EwaldSum ewald;
+    /**
+     * Дерево Барнса-Хата для приближенного вычисления взаимодействия всех пар частиц (null - не используется)
+     */
+    private BarnesHutTree tree;
+    /**
+     * Количество вычислений энергии и градиента
+     */
+    private long evaluations;
+
+    /**
+     * Конструктор класса создающий поле взаимодействия частиц на цилиндре
+     * @param degree степень (из теории)
+     * @param tube параметры цилиндра
+     */
+    public ForceField(int degree, Tube tube) {
+        this(new InversePowerPotential(degree), new InversePowerPotential(degree), tube);
+    }
+
+    /**
+     * Конструктор класса создающий поле взаимодействия частиц на цилиндре с заданными потенциалами.
+     * Если потенциал пары обрезан (например, сдвинутый потенциал), режим обрезки включается с его радиусом
+     * @param pair потенциал взаимодействия пары частиц
+     * @param wall потенциал взаимодействия частицы с краем цилиндра
+     * @param tube параметры цилиндра
+     */
+    public ForceField(PairPotential pair, PairPotential wall, Tube tube) {
+        this.pair = pair;
+        this.wall = wall;
+        this.heightTube = tube.getHeight();
+        this.width = 2 * Math.PI * tube.getRadius();
+        if (pair.getCutoff() < Double.POSITIVE_INFINITY) {
+            setCutoff(pair.getCutoff());
+        }
+    }
+
+    /**
+     * Метод включающий режим обрезки взаимодействия: учитываются только пары частиц на расстоянии не больше cutoff,
+     * соседи ищутся по сетке ячеек
+     * @param cutoff радиус обрезки взаимодействия (0 - учитываются все пары частиц)
+     */
+    public void setCutoff(double cutoff) {
+        if (!(cutoff > 0) && pair.getCutoff() < Double.POSITIVE_INFINITY) {
+            // обрезанный потенциал всегда считается по сетке ячеек
+            cutoff = pair.getCutoff();
+        }
+        this.cutoff = cutoff;
+        cutoff2 = cutoff > 0 ? cutoff * cutoff : Double.POSITIVE_INFINITY;
+        cellList = null;
+        ewald = null;
+    }
+
+    /**
+     * Метод включающий вычисление взаимодействия 1/r пар частиц суммой Эвальда EwaldSum с учетом всех образов частиц
+     * вдоль развертки вместо ближайшего образа. Радиус обрезки (если задан) становится радиусом прямой суммы,
+     * иначе он равен четырем средним расстояниям между частицами
+     * @param tolerance относительная точность энергии и сил (0 - сумма Эвальда не используется)
+     */
+    public void setEwald(double tolerance) {
+        if (tolerance > 0 && !(pair instanceof InversePowerPotential power && power.getDegree() == 1)) {
+            throw new IllegalStateException("Ewald summation needs the 1/r potential, not " + pair);
+        }
+        ewaldTolerance = tolerance;
+        ewald = null;
+    }
+
+    /**
+     * Метод включающий приближенное вычисление взаимодействия 1/r^degree всех пар частиц деревом Барнса-Хата BarnesHutTree
+     * вместо перебора пар (радиус обрезки при этом не используется)
+     * @param theta параметр раскрытия узлов дерева (отрицательное значение - дерево не используется)
+     */
+    public void setTree(double theta) {
+        if (theta < 0) {
+            tree = null;
+            return;
+        }
+        if (!(pair instanceof InversePowerPotential power)) {
+            throw new IllegalStateException("Barnes-Hut tree needs the 1/r^degree potential, not " + pair);
+        }
+        tree = new BarnesHutTree(power.getDegree(), new Tube(width / (2 * Math.PI), heightTube), theta);
+    }
+
+    /**
+     * Метод вычисляющий энергию системы и её градиент
+     * @param system координаты частиц
+     * @param gradX массив для производных энергии по x = phi*rho каждой частицы
+     * @param gradZ массив для производных энергии по z каждой частицы
+     * @return энергия системы
+     */
+    public double evaluate(ParticleSystem system, double[] gradX, double[] gradZ) {
+        evaluations++;
+        int numberOfParticle = system.size();
+        double energy = 0;
+        double[] force = new double[1];
+        for (int i = 0; i < numberOfParticle; i++) {
+            double z = system.getZ(i);
+            double dTop = z - heightTube / 2, dBottom = z + heightTube / 2;
+            energy += wall.energyAndForce(dTop * dTop, force);
+            gradZ[i] = -force[0] * dTop;
+            energy += wall.energyAndForce(dBottom * dBottom, force);
+            gradZ[i] -= force[0] * dBottom;
+            gradX[i] = 0;
+        }
+        if (ewaldTolerance > 0) {
+            if (ewald == null) {
+                double radius = cutoff > 0 ? cutoff : 4 * spacing(numberOfParticle);
+                ewald = new EwaldSum(new Tube(width / (2 * Math.PI), heightTube), radius, ewaldTolerance);
+            }
+            return energy + ewald.evaluate(system, 2, gradX, gradZ);
+        }
+        if (tree != null) {
+            return energy + tree.evaluate(system, gradX, gradZ);
+        }
+        if (cutoff > 0) {
+            updateCellList(system);
+        }
+        for (int i = 0; i < numberOfParticle; i++) {
+            double x = system.getPhi(i) * system.getRho(i);
+            double z = system.getZ(i);
+            int count = cutoff > 0 ? cellList.neighbours(x, z, neighbours) : numberOfParticle;
+            for (int k = 0; k < count; k++) {
+                int j = cutoff > 0 ? neighbours[k] : k;
+                // каждая пара обрабатывается один раз, в энергию системы она входит дважды
+                if (j <= i) {
+                    continue;
+                }
+                double dx = x - system.getPhi(j) * system.getRho(j);
+                dx -= width * Math.rint(dx / width);
+                double dz = z - system.getZ(j);
+                double r2 = dx * dx + dz * dz;
+                if (r2 > cutoff2) {
+                    continue;
+                }
+                energy += 2 * pair.energyAndForce(r2, force);
+                double forceOfPair = 2 * force[0];
+                gradX[i] -= forceOfPair * dx;
+                gradZ[i] -= forceOfPair * dz;
+                gradX[j] += forceOfPair * dx;
+                gradZ[j] += forceOfPair * dz;
+            }
+        }
+        return energy;
+    }
+
+    /**
+     * Метод раскладывающий частицы по сетке ячеек (при первом вызове сетка создается, затем частицы только перемещаются)
+     * @param system координаты частиц
+     */
+    private void updateCellList(ParticleSystem system) {
+        int numberOfParticle = system.size();
+        if (cellList == null || neighbours.length != numberOfParticle) {
+            cellList = new CellList(width, heightTube, cutoff, numberOfParticle);
+            neighbours = new int[numberOfParticle];
+            for (int i = 0; i < numberOfParticle; i++) {
+                cellList.insert(i, system.getPhi(i) * system.getRho(i), system.getZ(i));
+            }
+            return;
+        }
+        for (int i = 0; i < numberOfParticle; i++) {
+            cellList.move(i, system.getPhi(i) * system.getRho(i), system.getZ(i));
+        }
+    }
+
+    /**
+     * Метод сдвигающий частицу вдоль поверхности цилиндра. Угол phi приводится к [0, 2pi), а частица, которая вышла бы
+     * за край цилиндра, останавливается на середине пути до края
+     * @param system координаты частиц
+     * @param i номер частицы
+     * @param dx сдвиг вдоль развертки (phi*rho)
+     * @param dz сдвиг по z
+     */
+    public void displace(ParticleSystem system, int i, double dx, double dz) {
+        double phi = system.getPhi(i) + dx / system.getRho(i);
+        phi -= 2 * Math.PI * Math.floor(phi / (2 * Math.PI));
+        double z = system.getZ(i) + dz;
+        if (z >= heightTube / 2 || z <= -heightTube / 2) {
+            z = (system.getZ(i) + Math.copySign(heightTube / 2, dz)) / 2;
+        }
+        system.move(i, phi, z);
+    }
+
+    /**
+     * Метод возвращающий среднеквадратичную величину градиента в расчете на одну частицу
+     * @param gradX производные энергии по x
+     * @param gradZ производные энергии по z
+     * @return корень из среднего квадрата длины градиента частицы
+     */
+    public static double norm(double[] gradX, double[] gradZ) {
+        double sum = 0;
+        for (int i = 0; i < gradX.length; i++) {
+            sum += gradX[i] * gradX[i] + gradZ[i] * gradZ[i];
+        }
+        return gradX.length == 0 ? 0 : Math.sqrt(sum / gradX.length);
+    }
+
+    /**
+     * Метод возвращающий среднее расстояние между частицами при равномерном размещении на боковой поверхности
+     * (масштаб для наибольшего сдвига частицы за шаг)
+     * @param numberOfParticle количество частиц
+     * @return среднее расстояние между частицами
+     */
+    public double spacing(int numberOfParticle) {
+        return Math.sqrt(width * heightTube / Math.max(1, numberOfParticle));
+    }
+
+    /**
+     * Метод возвращающий количество вычислений энергии и градиента
+     * @return количество вычислений
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+}
@@ -0,0 +1,47 @@
+package org.nanotubes.minimization;
+
+/**
+ * Класс потенциала 1/r^degree (из теории). Энергия и сила вычисляются через PairKernel целыми степенями r^-2
+ */
+public final class InversePowerPotential implements PairPotential {
+    /**
+     * Степень (из теории)
+     */
+    private final int degree;
+
+    /**
+     * Конструктор класса создающий потенциал 1/r^degree
+     * @param degree степень (из теории)
+     */
+    public InversePowerPotential(int degree) {
+        if (degree <= 0) {
+            throw new IllegalArgumentException("degree must be positive: " + degree);
+        }
+        this.degree = degree;
+    }
+
+    @Override
+    public double energy(double r2) {
+        return PairKernel.energy(r2, degree);
+    }
+
+    @Override
+    public double energyAndForce(double r2, double[] force) {
+        double energy = PairKernel.energy(r2, degree);
+        force[0] = PairKernel.force(r2, energy, degree);
+        return energy;
+    }
+
+    /**
+     * Метод возвращающий степень
+     * @return степень (из теории)
+     */
+    public int getDegree() {
+        return degree;
+    }
+
+    @Override
+    public String toString() {
+        return "power:" + degree;
+    }
+}
@@ -0,0 +1,64 @@
+package org.nanotubes.minimization;
+
+/**
+ * Класс потенциала Леннард-Джонса 4*epsilon*((sigma/r)^12 - (sigma/r)^6): отталкивание на малых расстояниях
+ * и притяжение с минимумом -epsilon на расстоянии 2^(1/6)*sigma. Вычисляется без корня, через (sigma^2/r^2)^3
+ */
+public final class LennardJonesPotential implements PairPotential {
+    /**
+     * Глубина потенциальной ямы
+     */
+    private final double epsilon;
+    /**
+     * Расстояние, на котором энергия равна нулю
+     */
+    private final double sigma;
+    /**
+     * Квадрат sigma
+     */
+    private final double sigma2;
+    /**
+     * Множитель энергии 4*epsilon
+     */
+    private final double energyFactor;
+    /**
+     * Множитель силы 24*epsilon
+     */
+    private final double forceFactor;
+
+    /**
+     * Конструктор класса создающий потенциал Леннард-Джонса
+     * @param epsilon глубина потенциальной ямы
+     * @param sigma расстояние, на котором энергия равна нулю
+     */
+    public LennardJonesPotential(double epsilon, double sigma) {
+        if (!(sigma > 0)) {
+            throw new IllegalArgumentException("sigma must be positive: " + sigma);
+        }
+        this.epsilon = epsilon;
+        this.sigma = sigma;
+        sigma2 = sigma * sigma;
+        energyFactor = 4 * epsilon;
+        forceFactor = 24 * epsilon;
+    }
+
+    @Override
+    public double energy(double r2) {
+        double s2 = sigma2 / r2;
+        double s6 = s2 * s2 * s2;
+        return energyFactor * s6 * (s6 - 1);
+    }
+
+    @Override
+    public double energyAndForce(double r2, double[] force) {
+        double s2 = sigma2 / r2;
+        double s6 = s2 * s2 * s2;
+        force[0] = forceFactor * s6 * (2 * s6 - 1) / r2;
+        return energyFactor * s6 * (s6 - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "lj:" + epsilon + "," + sigma;
+    }
+}
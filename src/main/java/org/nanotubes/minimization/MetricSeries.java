@@ -0,0 +1,229 @@
+package org.nanotubes.minimization;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Класс хранящий значения величины на каждом шаге минимизации в памяти постоянного размера.
+ * Значения собираются в корзины по bucketWidth подряд идущих шагов (минимум, максимум и среднее корзины);
+ * когда все корзины заполнены, соседние корзины попарно объединяются, а ширина корзины удваивается.
+ * Поэтому история любой длины занимает не больше capacity корзин и описывает весь расчет, а не только его начало
+ */
+public class MetricSeries {
+    /**
+     * Количество корзин по умолчанию
+     */
+    public static final int DEFAULT_CAPACITY = 2048;
+
+    /**
+     * Минимальные и максимальные значения в корзинах
+     */
+    private final double[] min, max;
+    /**
+     * Суммы значений в корзинах
+     */
+    private final double[] sum;
+    /**
+     * Количество значений в каждой корзине
+     */
+    private final int[] count;
+    /**
+     * Количество занятых корзин
+     */
+    private int buckets;
+    /**
+     * Количество шагов в полной корзине
+     */
+    private long bucketWidth = 1;
+    /**
+     * Количество добавленных значений
+     */
+    private long size;
+    /**
+     * Первое и последнее добавленные значения
+     */
+    private double first = Double.NaN, last = Double.NaN;
+
+    /**
+     * Конструктор класса создающий пустую историю с количеством корзин по умолчанию
+     */
+    public MetricSeries() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Конструктор класса создающий пустую историю
+     * @param capacity наибольшее количество корзин (четное, не меньше 2)
+     */
+    public MetricSeries(int capacity) {
+        if (capacity < 2 || capacity % 2 != 0) {
+            throw new IllegalArgumentException("capacity must be even and at least 2: " + capacity);
+        }
+        min = new double[capacity];
+        max = new double[capacity];
+        sum = new double[capacity];
+        count = new int[capacity];
+    }
+
+    /**
+     * Метод добавляющий значение следующего шага
+     * @param value значение
+     */
+    public void add(double value) {
+        if (buckets == 0 || count[buckets - 1] == bucketWidth) {
+            if (buckets == min.length) {
+                merge();
+            }
+            min[buckets] = value;
+            max[buckets] = value;
+            sum[buckets] = 0;
+            count[buckets] = 0;
+            buckets++;
+        }
+        int bucket = buckets - 1;
+        min[bucket] = Math.min(min[bucket], value);
+        max[bucket] = Math.max(max[bucket], value);
+        sum[bucket] += value;
+        count[bucket]++;
+        if (size == 0) {
+            first = value;
+        }
+        last = value;
+        size++;
+    }
+
+    /**
+     * Метод попарно объединяющий соседние корзины и удваивающий ширину корзины
+     */
+    private void merge() {
+        int half = buckets / 2;
+        for (int i = 0; i < half; i++) {
+            int a = 2 * i, b = 2 * i + 1;
+            min[i] = Math.min(min[a], min[b]);
+            max[i] = Math.max(max[a], max[b]);
+            sum[i] = sum[a] + sum[b];
+            count[i] = count[a] + count[b];
+        }
+        buckets = half;
+        bucketWidth *= 2;
+    }
+
+    /**
+     * Метод возвращающий количество добавленных значений
+     * @return количество значений
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Метод возвращающий первое добавленное значение
+     * @return первое значение (NaN, если значений нет)
+     */
+    public double getFirst() {
+        return first;
+    }
+
+    /**
+     * Метод возвращающий последнее добавленное значение
+     * @return последнее значение (NaN, если значений нет)
+     */
+    public double getLast() {
+        return last;
+    }
+
+    /**
+     * Метод возвращающий количество занятых корзин
+     * @return количество корзин
+     */
+    public int getBucketCount() {
+        return buckets;
+    }
+
+    /**
+     * Метод возвращающий количество шагов в полной корзине
+     * @return ширина корзины
+     */
+    public long getBucketWidth() {
+        return bucketWidth;
+    }
+
+    /**
+     * Метод возвращающий номер первого шага корзины
+     * @param bucket номер корзины
+     * @return номер шага
+     */
+    public long getStep(int bucket) {
+        return bucket * bucketWidth;
+    }
+
+    /**
+     * Метод возвращающий наименьшее значение в корзине
+     * @param bucket номер корзины
+     * @return наименьшее значение
+     */
+    public double getMin(int bucket) {
+        return min[bucket];
+    }
+
+    /**
+     * Метод возвращающий наибольшее значение в корзине
+     * @param bucket номер корзины
+     * @return наибольшее значение
+     */
+    public double getMax(int bucket) {
+        return max[bucket];
+    }
+
+    /**
+     * Метод возвращающий среднее значение в корзине
+     * @param bucket номер корзины
+     * @return среднее значение
+     */
+    public double getMean(int bucket) {
+        return sum[bucket] / count[bucket];
+    }
+
+    /**
+     * Метод записывающий историю (для контрольной точки)
+     * @param out поток записи
+     * @throws IOException ошибка записи
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(min.length);
+        out.writeInt(buckets);
+        out.writeLong(bucketWidth);
+        out.writeLong(size);
+        out.writeDouble(first);
+        out.writeDouble(last);
+        for (int i = 0; i < buckets; i++) {
+            out.writeDouble(min[i]);
+            out.writeDouble(max[i]);
+            out.writeDouble(sum[i]);
+            out.writeInt(count[i]);
+        }
+    }
+
+    /**
+     * Метод читающий историю, записанную методом write
+     * @param in поток чтения
+     * @return история
+     * @throws IOException ошибка чтения
+     */
+    static MetricSeries read(DataInput in) throws IOException {
+        MetricSeries series = new MetricSeries(in.readInt());
+        series.buckets = in.readInt();
+        series.bucketWidth = in.readLong();
+        series.size = in.readLong();
+        series.first = in.readDouble();
+        series.last = in.readDouble();
+        for (int i = 0; i < series.buckets; i++) {
+            series.min[i] = in.readDouble();
+            series.max[i] = in.readDouble();
+            series.sum[i] = in.readDouble();
+            series.count[i] = in.readInt();
+        }
+        return series;
+    }
+}
@@ -3,11 +3,23 @@ package org.nanotubes.minimization;
 import javafx.collections.ObservableList;
 
 import org.nanotubes.generation.Geom.Particle;
+import org.nanotubes.generation.Geom.ParticleSystem;
 import org.nanotubes.generation.Geom.Tube;
 
-import java.util.ArrayList;
-
-import static java.lang.Math.pow;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.concurrent.RecursiveAction;
 
 
 /**
@@ -43,11 +55,27 @@ public class Minimization {
      */
     @SuppressWarnings("FieldCanBeLocal")
     public static final double MAX_VALUE = 1.7976931348623157E308;
+    /**
+     * Наибольшее количество шагов минимизации
+     */
+    static final int MAX_ITERATIONS = 10000;
+    /**
+     * Метка файла контрольной точки ("NTCP")
+     */
+    private static final int CHECKPOINT_MAGIC = 0x4E544350;
+    /**
+     * Версия формата контрольной точки
+     */
+    private static final int CHECKPOINT_VERSION = 5;
 
     /**
-     * Исходные координаты частиц, выбранные с помощью распределения Пуассона
+     * Исходные частицы, выбранные с помощью распределения Пуассона (null, если минимизация запущена без графических объектов)
      */
     private final ObservableList<Particle> poissonDiskCoordinatesParticles;
+    /**
+     * Координаты частиц, с которыми работает минимизация
+     */
+    private final ParticleSystem system;
     /**
      * Количество частиц
      */
@@ -56,24 +84,133 @@ public class Minimization {
      * Степень (из теории)
      */
     private final int degree;
+    /**
+     * Потенциал взаимодействия пары частиц (по умолчанию 1/r^degree)
+     */
+    private PairPotential pair;
+    /**
+     * Потенциал взаимодействия частицы с краем цилиндра по квадрату расстояния до края (по умолчанию 1/d^degree)
+     */
+    private PairPotential wall;
     /**
      * Параметры цилиндра
      */
-    private final double heightTube;
+    private final double heightTube, radiusTube;
+    /**
+     * Длина окружности цилиндра - период развертки по x = phi*rho
+     */
+    private final double width;
+    /**
+     * Радиус обрезки взаимодействия (0 - учитываются все пары частиц)
+     */
+    private double cutoff;
+    /**
+     * Квадрат радиуса обрезки взаимодействия (бесконечность - учитываются все пары частиц)
+     */
+    private double cutoff2 = Double.POSITIVE_INFINITY;
+    /**
+     * Сетка ячеек для поиска соседей в режиме обрезки (null - режим выключен)
+     */
+    private CellList cellList;
+    /**
+     * Буфер для номеров соседних частиц
+     */
+    private int[] neighbours;
+    /**
+     * Координаты phi пробных положений частиц, вычисленных в newParticle
+     */
+    private final double[] trialPhi;
+    /**
+     * Координаты z пробных положений частиц, вычисленных в newParticle
+     */
+    private final double[] trialZ;
+    /**
+     * Изменения энергии системы при переходе частиц в пробные положения
+     */
+    private final double[] energyChange;
+    /**
+     * Признаки принятых пробных положений частиц (для параллельного шага)
+     */
+    private final boolean[] accepted;
+    /**
+     * Энергии, приходящиеся на каждую частицу (для параллельного пересчета энергии системы)
+     */
+    private final double[] energyOfParticle;
+    /**
+     * Буферы для номеров соседних частиц потоков параллельного шага (создаются один раз для каждого потока)
+     */
+    private final ThreadLocal<int[]> buffers;
+    /**
+     * Текущая энергия системы, обновляемая по изменениям энергии принятых перемещений
+     */
+    private double energy;
+    /**
+     * Через сколько шагов энергия системы пересчитывается полностью, чтобы ограничить накопление ошибок округления
+     */
+    private int energyRecomputeInterval = 100;
+    /**
+     * Количество потоков для параллельного шага минимизации (0 - последовательный шаг)
+     */
+    private int parallelism;
+    /**
+     * Признак использования векторного вычисления взаимодействия VectorKernel, если оно доступно
+     */
+    private boolean vectorization = true;
+    /**
+     * Векторное вычисление взаимодействия всех пар частиц (null - модуль jdk.incubator.vector не подключен,
+     * потенциал не 1/r^degree или векторное вычисление выключено; используется скалярный цикл)
+     */
+    private VectorKernel vectorKernel;
+    /**
+     * Признак досрочной остановки минимизации
+     */
+    private volatile boolean cancelled;
+    /**
+     * Признак начатой минимизации (начальная энергия уже вычислена, например при продолжении с контрольной точки)
+     */
+    private boolean started;
+    /**
+     * Количество оставшихся шагов минимизации
+     */
+    private int iter = MAX_ITERATIONS;
+    /**
+     * Энергия системы на предыдущем шаге
+     */
+    private double energyOld = MAX_VALUE;
+    /**
+     * Файл контрольной точки (null - контрольные точки не записываются)
+     */
+    private Path checkpointFile;
+    /**
+     * Через сколько шагов записывается контрольная точка
+     */
+    private int checkpointInterval;
+    /**
+     * Файл траектории, в который записываются кадры минимизации (null - траектория не записывается)
+     */
+    private TrajectoryWriter trajectory;
+    /**
+     * Получатель сведений о ходе минимизации (null - сведения не передаются)
+     */
+    private MinimizationListener listener;
+    /**
+     * Начальное значение генератора случайных чисел, по которому получены исходные координаты частиц (записывается в контрольную точку)
+     */
+    private long seed;
 
     /**
-     * Массив для записи значений энергий системы на каждом шаге минимизации
+     * История значений энергий системы на каждом шаге минимизации
      */
-    private final ArrayList<Double> arrayEnergy = new ArrayList<>();
+    private MetricSeries arrayEnergy = new MetricSeries();
     /**
-     * Массив для записи значений коэффициента координаты на каждом шаге системы
+     * История значений коэффициента координаты на каждом шаге системы
      */
-    private final ArrayList<Double> arrayCoefficientForZ = new ArrayList<>();
+    private MetricSeries arrayCoefficientForZ = new MetricSeries();
 
     /**
-     * Массив для записи значений коэффициента угла на каждом шаге системы
+     * История значений коэффициента угла на каждом шаге системы
      */
-    private final ArrayList<Double> arrayCoefficientForAngel = new ArrayList<>();
+    private MetricSeries arrayCoefficientForAngel = new MetricSeries();
 
 
     /**
@@ -83,172 +220,778 @@ public class Minimization {
      * @param tube параметры цилиндра
      */
     public Minimization(ObservableList<Particle> poissonDiskCoordinatesParticles, int degree, Tube tube) {
+        this(poissonDiskCoordinatesParticles, ParticleSystem.of(poissonDiskCoordinatesParticles), degree, tube);
+    }
+
+    /**
+     * Конструктор класса Minimization создающий обект Minimization без графических объектов
+     * @param system координаты частиц
+     * @param degree степень (из теории)
+     * @param tube параметры цилиндра
+     */
+    public Minimization(ParticleSystem system, int degree, Tube tube) {
+        this(null, system, degree, tube);
+    }
+
+    private Minimization(ObservableList<Particle> poissonDiskCoordinatesParticles, ParticleSystem system, int degree, Tube tube) {
         this.poissonDiskCoordinatesParticles = poissonDiskCoordinatesParticles;
+        this.system = system;
         this.degree = degree;
-        numberOfParticle = poissonDiskCoordinatesParticles.size();
+        pair = new InversePowerPotential(degree);
+        wall = pair;
+        numberOfParticle = system.size();
         heightTube = tube.getHeight();
+        radiusTube = tube.getRadius();
+        width = 2 * Math.PI * radiusTube;
+        updateVectorKernel();
+        trialPhi = new double[numberOfParticle];
+        trialZ = new double[numberOfParticle];
+        energyChange = new double[numberOfParticle];
+        accepted = new boolean[numberOfParticle];
+        energyOfParticle = new double[numberOfParticle];
+        buffers = ThreadLocal.withInitial(() -> new int[numberOfParticle]);
     }
 
+    /**
+     * Метод минимизирующий энергию и переносящий полученные координаты в исходные частицы
+     * @return частицы после минимизации
+     */
     public ObservableList<Particle> minimization () {
-        ObservableList<Particle> list = poissonDiskCoordinatesParticles;
-        double energyOld = MAX_VALUE;
-        double energyNew = energyOfSystem(list);
-
-        arrayEnergy.add(energyNew);
-        arrayCoefficientForZ.add(COEFFICIENT_FOR_Z);
-        arrayCoefficientForAngel.add(COEFFICIENT_FOR_ANGLE);
-        int iter = 10000;
-        while (COEFFICIENT_FOR_ANGLE > ACCEPTABLE_COEFFICIENT_VALUE_K_ANGEL && COEFFICIENT_FOR_Z > ACCEPTABLE_COEFFICIENT_VALUE_K_Z && energyOld >= energyNew && iter > 0) {
+        minimizationOfSystem().syncTo(poissonDiskCoordinatesParticles);
+        return poissonDiskCoordinatesParticles;
+    }
+
+    /**
+     * Метод минимизирующий энергию системы частиц
+     * @return координаты частиц после минимизации
+     */
+    public ParticleSystem minimizationOfSystem () {
+        ForkJoinPool pool = parallelism > 0 ? new ForkJoinPool(parallelism) : null;
+        try {
+            minimizationOfSystem(pool);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        return system;
+    }
+
+    /**
+     * Метод минимизирующий энергию системы частиц
+     * @param pool пул потоков для параллельного шага (null - последовательный шаг)
+     */
+    private void minimizationOfSystem (ForkJoinPool pool) {
+        if (!started) {
+            energy = energyOfSystem();
+            arrayEnergy.add(energy);
+            arrayCoefficientForZ.add(COEFFICIENT_FOR_Z);
+            arrayCoefficientForAngel.add(COEFFICIENT_FOR_ANGLE);
+            started = true;
+            recordFrame();
+            notifyListener();
+        }
+        double energyNew = energy;
+
+        while (COEFFICIENT_FOR_ANGLE > ACCEPTABLE_COEFFICIENT_VALUE_K_ANGEL && COEFFICIENT_FOR_Z > ACCEPTABLE_COEFFICIENT_VALUE_K_Z && energyOld >= energyNew && iter > 0 && !cancelled) {
             iter--;
             if (energyOld - energyNew < ACCEPTABLE_VALUE_OF_ENERGY_DIFFERENCE) {
                 COEFFICIENT_FOR_Z = COEFFICIENT_FOR_Z/2;
                 COEFFICIENT_FOR_ANGLE = COEFFICIENT_FOR_ANGLE/2;
             }
             energyOld = energyNew;
-            stepOfMinimization(list);
-            energyNew = energyOfSystem(list);
+            if (pool == null) {
+                stepOfMinimization();
+            } else {
+                pool.invoke(new ParallelStep(0, numberOfParticle));
+                applyAcceptedMoves();
+            }
+            if (pool != null) {
+                // на параллельном шаге пары частиц перемещаются одновременно, поэтому энергия пересчитывается полностью
+                energy = energyOfSystem(pool);
+            } else if ((MAX_ITERATIONS - iter) % energyRecomputeInterval == 0) {
+                energy = energyOfSystem();
+            }
+            energyNew = energy;
 
             arrayEnergy.add(energyNew);
             arrayCoefficientForZ.add(COEFFICIENT_FOR_Z);
             arrayCoefficientForAngel.add(COEFFICIENT_FOR_ANGLE);
+            recordFrame();
+            notifyListener();
+            if (checkpointFile != null && (MAX_ITERATIONS - iter) % checkpointInterval == 0) {
+                writeCheckpoint();
+            }
+        }
+        if (checkpointFile != null && cancelled) {
+            writeCheckpoint();
+        }
+    }
+
+    /**
+     * Метод записывающий кадр текущего шага в файл траектории
+     */
+    private void recordFrame() {
+        if (trajectory != null) {
+            try {
+                trajectory.record(MAX_ITERATIONS - iter, energy, system);
+            } catch (IOException e) {
+                throw new UncheckedIOException("cannot write trajectory", e);
+            }
+        }
+    }
+
+    /**
+     * Метод передающий сведения о текущем шаге получателю
+     */
+    private void notifyListener() {
+        if (listener != null) {
+            listener.stepCompleted(MAX_ITERATIONS - iter, energy, COEFFICIENT_FOR_ANGLE, COEFFICIENT_FOR_Z, system);
         }
+    }
 
-        return list;
+    /**
+     * Метод записывающий контрольную точку в заданный файл, не прерывая минимизацию при ошибке записи
+     */
+    private void writeCheckpoint() {
+        try {
+            writeCheckpoint(checkpointFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot write checkpoint " + checkpointFile, e);
+        }
     }
 
     /**
-     * Метод возвращающий чатицы после одного шага минимизации
-     * @param list частицы до минимизации
+     * Метод записывающий контрольную точку: параметры расчета (в том числе потенциалы взаимодействия), координаты частиц, коэффициенты шага, номер шага, энергию
+     * и историю минимизации в двоичном виде с контрольной суммой CRC32. Файл сначала пишется во временный файл и затем
+     * переименовывается, поэтому аварийное завершение во время записи не портит предыдущую контрольную точку.
+     * В режиме обрезки записываются и списки частиц в ячейках, чтобы продолжение перебирало соседей в том же порядке,
+     * а без него - длина вектора VectorKernel, от которой зависит порядок сложения пар
+     * @param file файл контрольной точки
+     * @throws IOException ошибка записи
      */
-    private void stepOfMinimization (ObservableList<Particle> list) {
+    public void writeCheckpoint(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary)), crc))) {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeInt(CHECKPOINT_VERSION);
+            out.writeInt(numberOfParticle);
+            out.writeInt(degree);
+            out.writeUTF(pair.toString());
+            out.writeUTF(wall.toString());
+            out.writeDouble(radiusTube);
+            out.writeDouble(heightTube);
+            out.writeDouble(cutoff);
+            out.writeInt(energyRecomputeInterval);
+            out.writeInt(parallelism);
+            out.writeInt(vectorLength());
+            out.writeLong(seed);
+            out.writeBoolean(started);
+            out.writeInt(iter);
+            out.writeDouble(energyOld);
+            out.writeDouble(energy);
+            out.writeDouble(COEFFICIENT_FOR_ANGLE);
+            out.writeDouble(COEFFICIENT_FOR_Z);
+            for (int i = 0; i < numberOfParticle; i++) {
+                out.writeDouble(system.getPhi(i));
+                out.writeDouble(system.getRho(i));
+                out.writeDouble(system.getZ(i));
+                out.writeDouble(system.getRadius(i));
+            }
+            arrayEnergy.write(out);
+            arrayCoefficientForZ.write(out);
+            arrayCoefficientForAngel.write(out);
+            if (cellList != null) {
+                cellList.write(out);
+            }
+            out.flush();
+            out.writeLong(crc.getValue());
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Метод создающий минимизацию по контрольной точке: повторный вызов minimizationOfSystem продолжает расчет с того шага,
+     * на котором была записана контрольная точка, и дает те же результаты, что и непрерывный расчет.
+     * Векторное вычисление включается, только если оно использовалось при записи; если вектор той же длины недоступен,
+     * контрольная точка не читается, так как другой порядок сложения пар изменил бы результаты.
+     * Файл читается целиком и контрольная сумма проверяется до разбора, поэтому размеры массивов берутся только из
+     * неповрежденного файла
+     * @param file файл контрольной точки
+     * @return минимизация, остановленная на шаге контрольной точки
+     * @throws IOException ошибка чтения, поврежденный файл или векторное вычисление контрольной точки недоступно
+     */
+    public static Minimization resume(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int length = bytes.length - Long.BYTES;
+        if (length < 2 * Integer.BYTES || buffer.getInt() != CHECKPOINT_MAGIC || buffer.getInt() != CHECKPOINT_VERSION) {
+            throw new IOException(file + " is not a checkpoint of version " + CHECKPOINT_VERSION);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        if (buffer.getLong(length) != crc.getValue()) {
+            throw new IOException(file + " is corrupted (checksum mismatch)");
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, buffer.position(), length - buffer.position()))) {
+            int numberOfParticle = in.readInt();
+            int degree = in.readInt();
+            PairPotential pair = PairPotential.of(in.readUTF());
+            PairPotential wall = PairPotential.of(in.readUTF());
+            Tube tube = new Tube(in.readDouble(), in.readDouble());
+            double cutoff = in.readDouble();
+            Minimization minimization = new Minimization(new ParticleSystem(numberOfParticle), degree, tube);
+            minimization.pair = pair;
+            minimization.wall = wall;
+            minimization.energyRecomputeInterval = in.readInt();
+            minimization.parallelism = in.readInt();
+            int vectorLength = in.readInt();
+            // в режиме обрезки векторное вычисление не используется, и его доступность не важна
+            minimization.vectorization = vectorLength > 0 || cutoff > 0;
+            minimization.updateVectorKernel();
+            if (cutoff <= 0 && minimization.vectorLength() != vectorLength) {
+                throw new IOException(file + " was written with the vector kernel of " + vectorLength
+                        + " lanes, but " + minimization.vectorLength() + " lanes are available"
+                        + " (is jdk.incubator.vector added with --add-modules?)");
+            }
+            minimization.seed = in.readLong();
+            minimization.started = in.readBoolean();
+            minimization.iter = in.readInt();
+            minimization.energyOld = in.readDouble();
+            minimization.energy = in.readDouble();
+            minimization.COEFFICIENT_FOR_ANGLE = in.readDouble();
+            minimization.COEFFICIENT_FOR_Z = in.readDouble();
+            for (int i = 0; i < numberOfParticle; i++) {
+                minimization.system.set(i, in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+            }
+            minimization.arrayEnergy = MetricSeries.read(in);
+            minimization.arrayCoefficientForZ = MetricSeries.read(in);
+            minimization.arrayCoefficientForAngel = MetricSeries.read(in);
+            if (cutoff > 0) {
+                minimization.setCutoff(cutoff);
+                minimization.cellList.read(in);
+            }
+            if (in.available() > 0) {
+                throw new IOException(file + " is corrupted (unexpected data after the checkpoint)");
+            }
+            return minimization;
+        }
+    }
+
+    /**
+     * Метод выполняющий один шаг минимизации: частицы перемещаются по очереди, каждая с учетом уже перемещенных (метод Гаусса-Зейделя)
+     */
+    void stepOfMinimization () {
         for (int i = 0; i < numberOfParticle; i++) {
-            Particle particle = newParticle(list, i);
-            if (energyOfPartial(list,list.get(i),i) > energyOfPartial(list,particle,i)) {
-                list.set(i, particle);
+            if (tryParticle(i, neighbours)) {
+                move(i);
+                energy += energyChange[i];
             }
         }
     }
 
     /**
-     * Метод возвращающий частицу с новыми координатами, учитывая взаимодейтвие выбранной частицы с другими частицами
-     * @param coordinates частицы
+     * Метод вычисляющий пробное положение частицы и проверяющий, уменьшает ли оно энергию при текущих положениях остальных частиц.
+     * Изменение энергии системы при переходе в пробное положение записывается в energyChange[i]
+     * @param i номер частицы
+     * @param buffer буфер для номеров соседних частиц
+     * @return истину, если пробное положение принимается
+     */
+    private boolean tryParticle (int i, int[] buffer) {
+        double energyOld = newParticle(i, buffer);
+        double rho = system.getRho(i);
+        double energyNew = energyOfPartial(trialPhi[i], rho, trialZ[i], i, buffer);
+        // в энергии системы каждая пара частиц учитывается дважды, а взаимодействие со стенками - один раз
+        energyChange[i] = 2 * (energyNew - energyOld) - (energyOfWalls(trialZ[i]) - energyOfWalls(system.getZ(i)));
+        return energyOld > energyNew;
+    }
+
+    /**
+     * Метод перемещающий частицу в её пробное положение
+     * @param i номер частицы
+     */
+    private void move (int i) {
+        system.move(i, trialPhi[i], trialZ[i]);
+        if (cellList != null) {
+            cellList.move(i, trialPhi[i] * system.getRho(i), trialZ[i]);
+        }
+    }
+
+    /**
+     * Метод перемещающий все частицы, пробные положения которых приняты на параллельном шаге (метод Якоби)
+     */
+    private void applyAcceptedMoves () {
+        for (int i = 0; i < numberOfParticle; i++) {
+            if (accepted[i]) {
+                move(i);
+            }
+        }
+    }
+
+    /**
+     * Задача параллельного шага минимизации: для диапазона частиц вычисляет пробные положения и признаки их принятия
+     * относительно положений частиц в начале шага, не изменяя систему
+     */
+    @SuppressWarnings("serial")
+    private class ParallelStep extends RecursiveAction {
+        /**
+         * Диапазон номеров частиц [from, to)
+         */
+        private final int from, to;
+
+        private ParallelStep(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > Math.max(1, numberOfParticle / (4 * parallelism))) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ParallelStep(from, middle), new ParallelStep(middle, to));
+                return;
+            }
+            int[] buffer = cellList == null ? null : buffers.get();
+            for (int i = from; i < to; i++) {
+                accepted[i] = tryParticle(i, buffer);
+            }
+        }
+    }
+
+    /**
+     * Задача параллельного пересчета энергии системы: для диапазона частиц вычисляет энергии, приходящиеся на каждую частицу
+     */
+    @SuppressWarnings("serial")
+    private class ParallelEnergy extends RecursiveAction {
+        /**
+         * Диапазон номеров частиц [from, to)
+         */
+        private final int from, to;
+
+        private ParallelEnergy(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > Math.max(1, numberOfParticle / (4 * parallelism))) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ParallelEnergy(from, middle), new ParallelEnergy(middle, to));
+                return;
+            }
+            int[] buffer = cellList == null ? null : buffers.get();
+            for (int i = from; i < to; i++) {
+                energyOfParticle[i] = energyOfPartial(system.getPhi(i), system.getRho(i), system.getZ(i), i, buffer);
+            }
+        }
+    }
+
+    /**
+     * Метод вычисляющий энергию системы в пуле потоков (энергии частиц складываются по порядку номеров,
+     * поэтому результат не зависит от количества потоков)
+     * @param pool пул потоков
+     * @return энергию системы частиц
+     */
+    private double energyOfSystem (ForkJoinPool pool) {
+        pool.invoke(new ParallelEnergy(0, numberOfParticle));
+        double Energy = 0;
+        for (int i = 0; i < numberOfParticle; i++) {
+            Energy += energyOfParticle[i];
+        }
+        return Energy;
+    }
+
+    /**
+     * Метод вычисляющий новые координаты выбранной частицы (trialPhi[i], trialZ[i]), учитывая взаимодейтвие выбранной частицы с другими частицами.
+     * За тот же проход по соседям вычисляется энергия частицы в текущем положении: квадрат расстояния до каждой частицы
+     * находится один раз и используется и для силы, и для энергии. Расстояние измеряется до ближайшего образа частицы
+     * на развертке с периодом 2pi*R, как в сетке ячеек режима обрезки и в ForceField
      * @param i номер выбранной частицы
-     * @return выбранную частицу с новыми координатами
+     * @param buffer буфер для номеров соседних частиц
+     * @return значение энергии системы, приходящееся на выбранную частицу в текущем положении (как в energyOfPartial)
      */
-    private Particle newParticle(ObservableList<Particle> coordinates, int i) {
-        Particle particle = new Particle(coordinates.get(i).getPhi(),coordinates.get(i).getRho(),coordinates.get(i).getZ(),coordinates.get(i).getRadius(), coordinates.get(i).getColor());
+    private double newParticle(int i, int[] buffer) {
+        double phi = system.getPhi(i);
+        double rho = system.getRho(i);
+        double z = system.getZ(i);
+        double x = phi * rho;
         double ForcePhi = 0.0;
         double ForceZ = 0.0;
-        for (int j = 0; j < numberOfParticle; j++) {
-            Particle jParticle = coordinates.get(j);
+        double Energy = 0.0;
+        double[] force = new double[2];
+        int count = cellList == null ? numberOfParticle : cellList.neighbours(x, z, buffer);
+        if (cellList == null && vectorKernel != null) {
+            Energy = vectorKernel.forceOfParticle(system, i, force);
+            ForcePhi = force[0];
+            ForceZ = force[1];
+            // все пары уже учтены векторным вычислением
+            count = 0;
+        }
+        for (int k = 0; k < count; k++) {
+            int j = cellList == null ? k : buffer[k];
             if (i != j) {
-                if (Math.abs(particle.getPhi() - jParticle.getPhi()) <= Math.PI/particle.getRadius()) {
-                    ForcePhi += (degree * particle.getRho() *
-                            (particle.getPhi() - jParticle.getPhi())) / pow(particle.distance(jParticle), degree + 2);
-                    ForceZ += (degree *
-                            (particle.getZ() - jParticle.getZ())) / pow(particle.distance(jParticle), degree + 2);
-                } else {
-                    ForcePhi += (degree * particle.getRho() * (-1)*
-                            (particle.getPhi() - jParticle.getPhi())) / pow(particle.distanceWith2Pi(jParticle), degree + 2);
-                    ForceZ += (degree *
-                            (particle.getZ() - jParticle.getZ())) / pow(particle.distanceWith2Pi(jParticle), degree + 2);
+                double dx = x - system.getPhi(j) * system.getRho(j);
+                dx -= width * Math.rint(dx / width);
+                double dz = z - system.getZ(j);
+                double r2 = dx * dx + dz * dz;
+                if (r2 <= cutoff2) {
+                    Energy += pair.energyAndForce(r2, force);
+                    ForcePhi += force[0] * dx;
+                    ForceZ += force[0] * dz;
                 }
             }
         }
-        ForceZ += degree / pow(particle.getZ() - heightTube / 2, degree + 1) +
-                degree / pow(particle.getZ() + heightTube / 2, degree + 1);
+        double dTop = z - heightTube / 2, dBottom = z + heightTube / 2;
+        Energy += wall.energyAndForce(dTop * dTop, force);
+        ForceZ += force[0] * dTop;
+        Energy += wall.energyAndForce(dBottom * dBottom, force);
+        ForceZ += force[0] * dBottom;
 
-        double phi = particle.getPhi() + COEFFICIENT_FOR_ANGLE * ForcePhi;
+        double newPhi = phi + COEFFICIENT_FOR_ANGLE * ForcePhi;
 
-        if (phi >= 2*Math.PI) {
-            particle.setPhi(2*Math.PI - phi);
-        } else if (phi <= 0) {
-            particle.setPhi(0-phi);
-        } else {
-            particle.setPhi(phi);
+        if (newPhi >= 2*Math.PI) {
+            newPhi = 2*Math.PI - newPhi;
+        } else if (newPhi <= 0) {
+            newPhi = 0-newPhi;
         }
 
-        double z = particle.getZ() + COEFFICIENT_FOR_Z * ForceZ;
+        double newZ = z + COEFFICIENT_FOR_Z * ForceZ;
 
-        if (z > heightTube/2) {
-            particle.setZ((-1) * particle.getZ());
-            particle.setPhi((-1) * particle.getPhi());
-        } else if (z < -heightTube/2) {
-            particle.setZ((-1) * particle.getZ());
-            particle.setPhi((-1)* particle.getPhi());
-        } else {
-            particle.setZ(z);
+        if (newZ > heightTube/2) {
+            newZ = (-1) * z;
+            newPhi = (-1) * newPhi;
+        } else if (newZ < -heightTube/2) {
+            newZ = (-1) * z;
+            newPhi = (-1) * newPhi;
         }
-
-        return particle;
+        trialPhi[i] = newPhi;
+        trialZ[i] = newZ;
+        return Energy;
     }
 
     /**
      * Метод возвращающий энергию системы в двумерном пространстве развертки боковой стороны цилиндра
-     * @param coordinates частицы
      * @return энергию системы частиц
      */
-    private double energyOfSystem (ObservableList<Particle> coordinates) {
+    double energyOfSystem () {
         double Energy = 0;
         for (int i = 0; i < numberOfParticle; i++) {
-            for (int j = 0; j < numberOfParticle; j++) {
+            double phi = system.getPhi(i);
+            double rho = system.getRho(i);
+            double z = system.getZ(i);
+            int count = cellList == null ? numberOfParticle : cellList.neighbours(phi * rho, z, neighbours);
+            for (int k = 0; k < count; k++) {
+                int j = cellList == null ? k : neighbours[k];
                 if (i != j) {
-                    if (Math.abs(coordinates.get(i).getPhi() - coordinates.get(j).getPhi()) <= Math.PI) {
-                        Energy += 1/pow(coordinates.get(i).distance(coordinates.get(j)),degree);
-                    }  else {
-                        Energy += 1/pow(coordinates.get(i).distanceWith2Pi(coordinates.get(j)),degree);
-                    }
+                    Energy += energyOfPair(phi, rho, z, j);
                 }
             }
-            Energy += 1 / pow(coordinates.get(i).getZ() - heightTube / 2, degree) +
-                    1 / pow(coordinates.get(i).getZ() + heightTube / 2, degree);
+            Energy += energyOfWalls(z);
         }
         return Energy;
     }
 
     /**
      * Метод возвращающий значение энергии системы при изменении координат одного элемета системы
-     * @param coordinates частицы
-     * @param particle измененная частица
+     * @param phi координата phi измененной частицы
+     * @param rho координата rho измененной частицы
+     * @param z координата z измененной частицы
+     * @param i номер измененной частицы
+     * @param buffer буфер для номеров соседних частиц
      * @return значение энергии системы при изменении координат одного элемета системы
      */
-    private double energyOfPartial (ObservableList<Particle> coordinates, Particle particle, int i) {
+    private double energyOfPartial (double phi, double rho, double z, int i, int[] buffer) {
         double Energy = 0;
-        for (int j = 0; j < numberOfParticle; j++) {
+        if (cellList == null && vectorKernel != null) {
+            return vectorKernel.energyOfParticle(system, phi, rho, z, i) + energyOfWalls(z);
+        }
+        int count = cellList == null ? numberOfParticle : cellList.neighbours(phi * rho, z, buffer);
+        for (int k = 0; k < count; k++) {
+            int j = cellList == null ? k : buffer[k];
             if (i != j) {
-                if (Math.abs(particle.getPhi() - coordinates.get(j).getPhi()) <= Math.PI) {
-                    Energy += 1/pow(particle.distance(coordinates.get(j)),degree);
-                }  else {
-                    Energy += 1/pow(particle.distanceWith2Pi(coordinates.get(j)),degree);
-                }
+                Energy += energyOfPair(phi, rho, z, j);
             }
         }
-        Energy += 1 / pow(particle.getZ() - heightTube / 2, degree) +
-                1 / pow(particle.getZ() + heightTube / 2, degree);
+        Energy += energyOfWalls(z);
         return Energy;
     }
 
+    /**
+     * Метод возвращающий энергию взаимодействия частицы с краями цилиндра
+     * @param z координата z частицы
+     * @return энергия взаимодействия с краями цилиндра
+     */
+    private double energyOfWalls (double z) {
+        double dTop = z - heightTube / 2, dBottom = z + heightTube / 2;
+        return wall.energy(dTop * dTop) + wall.energy(dBottom * dBottom);
+    }
+
+    /**
+     * Метод возвращающий энергию взаимодействия точки с заданными координатами и частицы (ноль за радиусом обрезки)
+     * @param phi координата phi точки
+     * @param rho координата rho точки
+     * @param z координата z точки
+     * @param j номер частицы
+     * @return энергия взаимодействия
+     */
+    private double energyOfPair (double phi, double rho, double z, int j) {
+        double dx = phi * rho - system.getPhi(j) * system.getRho(j);
+        dx -= width * Math.rint(dx / width);
+        double dz = z - system.getZ(j);
+        double r2 = dx * dx + dz * dz;
+        return r2 <= cutoff2 ? pair.energy(r2) : 0;
+    }
+
+    /**
+     * Метод включающий режим обрезки взаимодействия: учитываются только пары частиц на расстоянии не больше cutoff,
+     * соседи ищутся по сетке ячеек на развертке цилиндра. Без вызова метода учитываются все пары частиц
+     * @param cutoff радиус обрезки взаимодействия (положительный)
+     */
+    public void setCutoff(double cutoff) {
+        if (!(cutoff > 0)) {
+            throw new IllegalArgumentException("cutoff must be positive: " + cutoff);
+        }
+        this.cutoff = cutoff;
+        cutoff2 = cutoff * cutoff;
+        neighbours = new int[numberOfParticle];
+        buildCellList();
+    }
+
+    /**
+     * Метод заново раскладывающий частицы по сетке ячеек режима обрезки
+     */
+    private void buildCellList() {
+        cellList = new CellList(width, heightTube, cutoff, numberOfParticle);
+        for (int i = 0; i < numberOfParticle; i++) {
+            cellList.insert(i, system.getPhi(i) * system.getRho(i), system.getZ(i));
+        }
+    }
+
+    /**
+     * Метод задающий потенциалы взаимодействия вместо 1/r^degree. Если потенциал пары обрезан (например, сдвинутый потенциал),
+     * а режим обрезки не включен, он включается с радиусом обрезки потенциала
+     * @param pair потенциал взаимодействия пары частиц
+     * @param wall потенциал взаимодействия частицы с краем цилиндра (по квадрату расстояния до края)
+     */
+    public void setPotential(PairPotential pair, PairPotential wall) {
+        this.pair = pair;
+        this.wall = wall;
+        updateVectorKernel();
+        if (cutoff == 0 && pair.getCutoff() < Double.POSITIVE_INFINITY) {
+            setCutoff(pair.getCutoff());
+        }
+    }
+
+    /**
+     * Метод включающий или выключающий векторное вычисление взаимодействия всех пар частиц VectorKernel.
+     * Векторное вычисление используется для потенциала 1/r^degree без режима обрезки и только если модуль
+     * jdk.incubator.vector подключен (--add-modules jdk.incubator.vector), иначе используется скалярный цикл.
+     * По умолчанию включено
+     * @param vectorization истина - использовать векторное вычисление, если оно доступно
+     */
+    public void setVectorization(boolean vectorization) {
+        this.vectorization = vectorization;
+        updateVectorKernel();
+    }
+
+    /**
+     * Метод возвращающий признак того, что взаимодействие всех пар частиц вычисляется векторными командами
+     * @return истину, если используется VectorKernel
+     */
+    public boolean isVectorized() {
+        return vectorKernel != null;
+    }
+
+    /**
+     * Метод возвращающий длину вектора используемого векторного вычисления
+     * @return количество чисел в векторе (0 - используется скалярный цикл)
+     */
+    private int vectorLength() {
+        return vectorKernel == null || cutoff > 0 ? 0 : VectorKernel.length();
+    }
+
+    /**
+     * Метод создающий векторное вычисление взаимодействия для текущего потенциала пары частиц, если оно доступно
+     */
+    private void updateVectorKernel() {
+        vectorKernel = null;
+        if (!vectorization || !(pair instanceof InversePowerPotential power)) {
+            return;
+        }
+        try {
+            if (VectorKernel.isSupported()) {
+                vectorKernel = new VectorKernel(power.getDegree(), width);
+            }
+        } catch (LinkageError e) {
+            // модуль jdk.incubator.vector не подключен - остается скалярный цикл
+        }
+    }
+
+    /**
+     * Метод включающий параллельный шаг минимизации (метод Якоби): пробные положения всех частиц вычисляются параллельно
+     * относительно положений в начале шага, затем принятые перемещения применяются одновременно.
+     * По умолчанию используется последовательный шаг (метод Гаусса-Зейделя), зависящий от порядка частиц
+     * @param threads количество потоков (0 - последовательный шаг)
+     */
+    public void setParallelism(int threads) {
+        this.parallelism = threads;
+    }
+
+    /**
+     * Метод останавливающий минимизацию после текущего шага (можно вызывать из другого потока)
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Метод включающий запись контрольных точек во время минимизации (а также после досрочной остановки)
+     * @param file файл контрольной точки (null - контрольные точки не записываются)
+     * @param interval через сколько шагов записывается контрольная точка (не меньше 1)
+     */
+    public void setCheckpoint(Path file, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("checkpoint interval must be at least 1: " + interval);
+        }
+        this.checkpointFile = file;
+        this.checkpointInterval = interval;
+    }
+
+    /**
+     * Метод включающий запись кадров минимизации (номер шага, энергия, координаты частиц) в файл траектории.
+     * Файл открывает и закрывает вызывающий код
+     * @param trajectory файл траектории (null - траектория не записывается)
+     */
+    public void setTrajectory(TrajectoryWriter trajectory) {
+        this.trajectory = trajectory;
+    }
+
+    /**
+     * Метод задающий получателя сведений о ходе минимизации
+     * @param listener получатель, вызываемый в потоке минимизации после каждого шага (null - сведения не передаются)
+     */
+    public void setListener(MinimizationListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Метод задающий начальное значение генератора случайных чисел, по которому получены исходные координаты частиц.
+     * Сама минимизация случайных чисел не использует, значение записывается в контрольную точку, чтобы расчет можно было повторить
+     * @param seed начальное значение генератора случайных чисел
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Метод возвращающий начальное значение генератора случайных чисел, по которому получены исходные координаты частиц
+     * @return начальное значение генератора случайных чисел
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Метод возвращающий признак досрочной остановки минимизации
+     * @return истину, если минимизация была остановлена методом cancel
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Метод задающий, через сколько шагов энергия системы пересчитывается полностью.
+     * Между пересчетами энергия обновляется по изменениям энергии принятых перемещений.
+     * На параллельном шаге перемещения одновременны, поэтому энергия пересчитывается на каждом шаге
+     * @param energyRecomputeInterval количество шагов между полными пересчетами (1 - пересчет на каждом шаге)
+     */
+    public void setEnergyRecomputeInterval(int energyRecomputeInterval) {
+        if (energyRecomputeInterval < 1) {
+            throw new IllegalArgumentException("energy recompute interval must be at least 1: " + energyRecomputeInterval);
+        }
+        this.energyRecomputeInterval = energyRecomputeInterval;
+    }
+
+    /**
+     * Метод возвращающий координаты частиц, с которыми работает минимизация
+     * @return система частиц
+     */
+    public ParticleSystem getSystem() {
+        return system;
+    }
+
+    /**
+     * Метод возвращающий степень (из теории)
+     * @return степень
+     */
+    public int getDegree() {
+        return degree;
+    }
+
+    /**
+     * Метод возвращающий потенциал взаимодействия пары частиц
+     * @return потенциал пары
+     */
+    public PairPotential getPairPotential() {
+        return pair;
+    }
+
+    /**
+     * Метод возвращающий потенциал взаимодействия частицы с краем цилиндра
+     * @return потенциал края
+     */
+    public PairPotential getWallPotential() {
+        return wall;
+    }
+
+    /**
+     * Метод возвращающий радиус цилиндра
+     * @return радиус цилиндра
+     */
+    public double getRadiusTube() {
+        return radiusTube;
+    }
+
+    /**
+     * Метод возвращающий радиус обрезки взаимодействия
+     * @return радиус обрезки (0 - учитываются все пары частиц)
+     */
+    public double getCutoff() {
+        return cutoff;
+    }
+
+    /**
+     * Метод возвращающий высоту цилиндра
+     * @return высота цилиндра
+     */
+    public double getHeightTube() {
+        return heightTube;
+    }
+
     /**
      * Метод возвращающий значения энергии системы на каждом шаге минимизации
-     * @return массив значений энергии системы на каждом шаге минимизации
+     * @return история значений энергии системы на каждом шаге минимизации
      */
-    public ArrayList<Double> getArrayEnergy() {
+    public MetricSeries getArrayEnergy() {
         return arrayEnergy;
     }
 
     /**
      * Метод возвращающий значения коэффициента для координаты на каждом шаге минимизации
-     * @return массив значений коэффициента на каждом шаге минимизации
+     * @return история значений коэффициента на каждом шаге минимизации
      */
-    public ArrayList<Double> getArrayCoefficientForZ() {
+    public MetricSeries getArrayCoefficientForZ() {
         return arrayCoefficientForZ;
     }
 
     /**
      * Метод возвращающий значения коэффициента для угла на каждом шаге минимизации
-     * @return массив значений коэффициента на каждом шаге минимизации
+     * @return история значений коэффициента на каждом шаге минимизации
      */
-    public ArrayList<Double> getArrayCoefficientForAngel() {
+    public MetricSeries getArrayCoefficientForAngel() {
         return arrayCoefficientForAngel;
     }
 
@@ -0,0 +1,20 @@
+package org.nanotubes.minimization;
+
+import org.nanotubes.generation.Geom.ParticleSystem;
+
+/**
+ * Интерфейс получающий сведения о ходе минимизации после каждого шага.
+ * Вызывается в потоке минимизации между шагами, поэтому координаты частиц в этот момент не изменяются
+ */
+@FunctionalInterface
+public interface MinimizationListener {
+    /**
+     * Метод вызываемый после каждого шага минимизации (и один раз перед первым шагом)
+     * @param step номер шага
+     * @param energy энергия системы
+     * @param coefficientForAngle коэффициент шага по углу
+     * @param coefficientForZ коэффициент шага по координате z
+     * @param system координаты частиц (изменяются следующим шагом, поэтому для передачи в другой поток их нужно скопировать)
+     */
+    void stepCompleted(int step, double energy, double coefficientForAngle, double coefficientForZ, ParticleSystem system);
+}
@@ -0,0 +1,163 @@
+package org.nanotubes.minimization;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+
+import org.nanotubes.generation.Geom.Particle;
+import org.nanotubes.generation.Geom.ParticleSystem;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Класс выполняющий минимизацию в фоновом потоке, не блокируя поток JavaFX.
+ * Ход минимизации передается в интерфейс не чаще, чем раз в PROGRESS_INTERVAL: номер шага - через progress,
+ * энергия - через message, номер шага и коэффициенты шага - через title. Координаты частиц переносятся в отображаемые
+ * частицы не чаще, чем раз в FRAME_INTERVAL, и только после того, как поток JavaFX применил предыдущий кадр.
+ * Метод stop останавливает минимизацию после текущего шага, и задача завершается успешно с достигнутыми координатами;
+ * отмена задачи также останавливает минимизацию, но результат задачи теряется
+ */
+public class MinimizationTask extends Task<ParticleSystem> {
+    /**
+     * Наименьший промежуток между сведениями о ходе минимизации в наносекундах
+     */
+    private static final long PROGRESS_INTERVAL = 100_000_000L;
+    /**
+     * Наименьший промежуток между кадрами отображения в наносекундах (не больше 30 кадров в секунду)
+     */
+    private static final long FRAME_INTERVAL = 33_000_000L;
+
+    /**
+     * Минимизация
+     */
+    private final Minimization minimization;
+    /**
+     * Отображаемые частицы, порядок которых совпадает с порядком частиц минимизации
+     */
+    private final ObservableList<Particle> particles;
+    /**
+     * Копии координат phi и z частиц для передачи в поток JavaFX
+     */
+    private final double[] framePhi, frameZ;
+    /**
+     * Признак кадра, который еще не применен потоком JavaFX
+     */
+    private final AtomicBoolean framePending = new AtomicBoolean();
+    /**
+     * Время последней передачи сведений о ходе минимизации и последнего кадра
+     */
+    private long lastProgress, lastFrame;
+    /**
+     * Действие после переноса кадра в частицы, например обновление 3D-объектов (null - ничего не делается)
+     */
+    private Runnable onFrame;
+
+    /**
+     * Конструктор класса создающий задачу минимизации
+     * @param minimization минимизация
+     * @param particles отображаемые частицы, порядок которых совпадает с порядком частиц минимизации
+     */
+    public MinimizationTask(Minimization minimization, ObservableList<Particle> particles) {
+        this.minimization = minimization;
+        this.particles = particles;
+        int numberOfParticle = minimization.getSystem().size();
+        framePhi = new double[numberOfParticle];
+        frameZ = new double[numberOfParticle];
+    }
+
+    @Override
+    protected ParticleSystem call() {
+        minimization.setListener(this::stepCompleted);
+        try {
+            ParticleSystem system = minimization.minimizationOfSystem();
+            // последний кадр переносится всегда, даже если предыдущий еще не применен
+            double[] phi = new double[system.size()], z = new double[system.size()];
+            copy(system, phi, z);
+            Platform.runLater(() -> apply(phi, z));
+            return system;
+        } finally {
+            minimization.setListener(null);
+        }
+    }
+
+    /**
+     * Метод получающий сведения о шаге минимизации (вызывается в потоке минимизации)
+     * @param step номер шага
+     * @param energy энергия системы
+     * @param coefficientForAngle коэффициент шага по углу
+     * @param coefficientForZ коэффициент шага по координате z
+     * @param system координаты частиц
+     */
+    private void stepCompleted(int step, double energy, double coefficientForAngle, double coefficientForZ, ParticleSystem system) {
+        long now = System.nanoTime();
+        if (now - lastProgress >= PROGRESS_INTERVAL) {
+            lastProgress = now;
+            updateProgress(step, Minimization.MAX_ITERATIONS);
+            updateMessage(String.valueOf(energy));
+            updateTitle("step " + step + ", k_angle " + coefficientForAngle + ", k_z " + coefficientForZ);
+        }
+        if (now - lastFrame >= FRAME_INTERVAL && framePending.compareAndSet(false, true)) {
+            lastFrame = now;
+            copy(system, framePhi, frameZ);
+            Platform.runLater(() -> {
+                apply(framePhi, frameZ);
+                framePending.set(false);
+            });
+        }
+    }
+
+    /**
+     * Метод копирующий координаты частиц
+     * @param system координаты частиц
+     * @param phi массив для координат phi
+     * @param z массив для координат z
+     */
+    private static void copy(ParticleSystem system, double[] phi, double[] z) {
+        for (int i = 0; i < system.size(); i++) {
+            phi[i] = system.getPhi(i);
+            z[i] = system.getZ(i);
+        }
+    }
+
+    /**
+     * Метод переносящий координаты в отображаемые частицы (вызывается в потоке JavaFX)
+     * @param phi координаты phi
+     * @param z координаты z
+     */
+    private void apply(double[] phi, double[] z) {
+        for (int i = 0; i < phi.length; i++) {
+            Particle particle = particles.get(i);
+            particle.setPhi(phi[i]);
+            particle.setZ(z[i]);
+        }
+        if (onFrame != null) {
+            onFrame.run();
+        }
+    }
+
+    /**
+     * Метод задающий действие после переноса каждого кадра в частицы (выполняется в потоке JavaFX)
+     * @param onFrame действие, например обновление 3D-объектов частиц
+     */
+    public void setOnFrame(Runnable onFrame) {
+        this.onFrame = onFrame;
+    }
+
+    /**
+     * Метод останавливающий минимизацию после текущего шага (задача завершается успешно, координаты переносятся в частицы)
+     */
+    public void stop() {
+        minimization.cancel();
+    }
+
+    /**
+     * Метод отменяющий задачу: минимизация останавливается после текущего шага
+     * @param mayInterruptIfRunning не используется, поток минимизации не прерывается
+     * @return истину, если задача отменена
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        minimization.cancel();
+        return super.cancel(false);
+    }
+}
@@ -0,0 +1,18 @@
+package org.nanotubes.minimization;
+
+import org.nanotubes.generation.Geom.ParticleSystem;
+
+/**
+ * Интерфейс минимизатора энергии системы частиц по градиенту ForceField.
+ * Минимизатор сдвигает частицы системы, пока среднеквадратичный градиент на частицу не станет меньше заданной точности
+ * или не будет исчерпано наибольшее количество шагов, и сообщает, за сколько шагов достигнута точность
+ */
+public interface Minimizer {
+    /**
+     * Метод минимизирующий энергию системы частиц
+     * @param field поле взаимодействия частиц
+     * @param system координаты частиц (изменяются)
+     * @return итог минимизации
+     */
+    MinimizerResult minimize(ForceField field, ParticleSystem system);
+}
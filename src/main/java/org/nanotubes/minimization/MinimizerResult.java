@@ -0,0 +1,83 @@
+package org.nanotubes.minimization;
+
+/**
+ * Класс описывающий итог работы минимизатора Minimizer
+ */
+public class MinimizerResult {
+    /**
+     * Количество выполненных шагов
+     */
+    private final int iterations;
+    /**
+     * Количество вычислений энергии и градиента
+     */
+    private final long evaluations;
+    /**
+     * Среднеквадратичный градиент на частицу после минимизации
+     */
+    private final double gradientNorm;
+    /**
+     * Признак достижения заданной точности
+     */
+    private final boolean converged;
+    /**
+     * История значений энергии системы на каждом шаге минимизации
+     */
+    private final MetricSeries energy;
+
+    /**
+     * Конструктор класса создающий итог минимизации
+     * @param iterations количество выполненных шагов
+     * @param evaluations количество вычислений энергии и градиента
+     * @param gradientNorm среднеквадратичный градиент на частицу после минимизации
+     * @param converged признак достижения заданной точности
+     * @param energy история значений энергии системы
+     */
+    public MinimizerResult(int iterations, long evaluations, double gradientNorm, boolean converged, MetricSeries energy) {
+        this.iterations = iterations;
+        this.evaluations = evaluations;
+        this.gradientNorm = gradientNorm;
+        this.converged = converged;
+        this.energy = energy;
+    }
+
+    /**
+     * Метод возвращающий количество выполненных шагов (при достижении точности - количество шагов до точности)
+     * @return количество шагов
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Метод возвращающий количество вычислений энергии и градиента (шаги с возвратом вычисляют их несколько раз)
+     * @return количество вычислений
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Метод возвращающий среднеквадратичный градиент на частицу после минимизации
+     * @return величина градиента
+     */
+    public double getGradientNorm() {
+        return gradientNorm;
+    }
+
+    /**
+     * Метод возвращающий признак достижения заданной точности
+     * @return истину, если градиент меньше заданной точности
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    /**
+     * Метод возвращающий историю значений энергии системы (первое значение - до первого шага)
+     * @return история значений энергии
+     */
+    public MetricSeries getEnergy() {
+        return energy;
+    }
+}
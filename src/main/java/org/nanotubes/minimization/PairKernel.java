@@ -0,0 +1,56 @@
+package org.nanotubes.minimization;
+
+/**
+ * Класс вычисляющий энергию и силу взаимодействия 1/r^degree по квадрату расстояния r^2
+ * Вместо Math.pow и Math.sqrt используются целые степени r^-2 (корень нужен только для нечетной степени)
+ */
+public final class PairKernel {
+
+    private PairKernel() {
+    }
+
+    /**
+     * Метод возвращающий энергию взаимодействия 1/r^degree
+     * @param r2 квадрат расстояния между частицами
+     * @param degree степень (из теории)
+     * @return энергия взаимодействия
+     */
+    public static double energy(double r2, int degree) {
+        if (degree == 2) {
+            return 1 / r2;
+        }
+        double inverse = 1 / r2;
+        double energy = power(inverse, degree >> 1);
+        return (degree & 1) == 0 ? energy : energy * Math.sqrt(inverse);
+    }
+
+    /**
+     * Метод возвращающий множитель силы degree/r^(degree+2) по уже вычисленной энергии 1/r^degree
+     * (проекции силы равны множителю, умноженному на разности координат)
+     * @param r2 квадрат расстояния между частицами
+     * @param energy энергия взаимодействия 1/r^degree
+     * @param degree степень (из теории)
+     * @return множитель силы
+     */
+    public static double force(double r2, double energy, int degree) {
+        return degree * energy / r2;
+    }
+
+    /**
+     * Метод возводящий число в целую неотрицательную степень двоичным возведением
+     * @param x число
+     * @param n степень
+     * @return x^n
+     */
+    public static double power(double x, int n) {
+        double result = 1;
+        while (n > 0) {
+            if ((n & 1) != 0) {
+                result *= x;
+            }
+            x *= x;
+            n >>= 1;
+        }
+        return result;
+    }
+}
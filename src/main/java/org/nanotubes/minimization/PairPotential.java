@@ -0,0 +1,82 @@
+package org.nanotubes.minimization;
+
+/**
+ * Интерфейс потенциала взаимодействия двух частиц, заданного по квадрату расстояния r^2.
+ * Множитель силы f = -(1/r) dE/dr: проекции силы, действующей на первую частицу, равны f, умноженному на разности
+ * координат первой и второй частиц. Энергия и множитель силы вычисляются за один вызов energyAndForce, так как
+ * у большинства потенциалов они имеют общие множители (степени r^-2, экспонента, корень).
+ * Реализации объявлены final, поэтому в цикле по парам частиц вызов встраивается JIT-компилятором. ShiftedPotential
+ * вызывает исходный потенциал, и этот вызов встраивается так же, пока в месте вызова встречается один класс исходного потенциала
+ */
+public interface PairPotential {
+    /**
+     * Метод возвращающий энергию взаимодействия
+     * @param r2 квадрат расстояния между частицами
+     * @return энергия взаимодействия
+     */
+    double energy(double r2);
+
+    /**
+     * Метод возвращающий энергию взаимодействия и записывающий множитель силы
+     * @param r2 квадрат расстояния между частицами
+     * @param force массив, в нулевой элемент которого записывается множитель силы -(1/r) dE/dr
+     * @return энергия взаимодействия
+     */
+    double energyAndForce(double r2, double[] force);
+
+    /**
+     * Метод возвращающий радиус, за которым взаимодействие равно нулю
+     * @return радиус обрезки (бесконечность - взаимодействие не обрезается)
+     */
+    default double getCutoff() {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Метод возвращающий потенциал, обрезанный на заданном радиусе и сдвинутый так, что энергия на радиусе обрезки равна нулю
+     * @param cutoff радиус обрезки
+     * @return сдвинутый потенциал
+     */
+    default PairPotential shifted(double cutoff) {
+        return new ShiftedPotential(this, cutoff);
+    }
+
+    /**
+     * Метод создающий потенциал по описанию вида название:параметры[@радиус обрезки], например lj:1,1@2.5.
+     * Описание совпадает с toString() потенциала, поэтому потенциал можно записать в контрольную точку
+     * @param spec описание: power:degree - 1/r^degree (степень целая), lj:epsilon,sigma - Леннард-Джонс,
+     *             yukawa:strength,kappa - экранированный кулоновский, soft:epsilon,sigma - мягкие сферы
+     * @return потенциал
+     * @throws IllegalArgumentException неизвестное название, неверное количество параметров или дробная степень
+     */
+    static PairPotential of(String spec) {
+        int at = spec.indexOf('@');
+        if (at >= 0) {
+            return of(spec.substring(0, at)).shifted(Double.parseDouble(spec.substring(at + 1)));
+        }
+        int colon = spec.indexOf(':');
+        String name = colon >= 0 ? spec.substring(0, colon) : spec;
+        String[] values = colon >= 0 ? spec.substring(colon + 1).split(",") : new String[0];
+        double[] parameters = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            parameters[i] = Double.parseDouble(values[i]);
+        }
+        int count = switch (name) {
+            case "power" -> 1;
+            case "lj", "yukawa", "soft" -> 2;
+            default -> throw new IllegalArgumentException("unknown potential " + name);
+        };
+        if (parameters.length != count) {
+            throw new IllegalArgumentException("potential " + name + " needs " + count + " parameters: " + spec);
+        }
+        if (name.equals("power") && (int) parameters[0] != parameters[0]) {
+            throw new IllegalArgumentException("degree of potential power must be an integer: " + spec);
+        }
+        return switch (name) {
+            case "power" -> new InversePowerPotential((int) parameters[0]);
+            case "lj" -> new LennardJonesPotential(parameters[0], parameters[1]);
+            case "yukawa" -> new YukawaPotential(parameters[0], parameters[1]);
+            default -> new SoftSpherePotential(parameters[0], parameters[1]);
+        };
+    }
+}
@@ -0,0 +1,64 @@
+package org.nanotubes.minimization;
+
+/**
+ * Класс потенциала, обрезанного на радиусе cutoff и сдвинутого на энергию исходного потенциала на этом радиусе:
+ * энергия непрерывна на радиусе обрезки, поэтому обрезка не создает скачков энергии при пересечении радиуса частицами.
+ * Сила внутри радиуса обрезки совпадает с силой исходного потенциала
+ */
+public final class ShiftedPotential implements PairPotential {
+    /**
+     * Исходный потенциал
+     */
+    private final PairPotential potential;
+    /**
+     * Радиус обрезки
+     */
+    private final double cutoff;
+    /**
+     * Квадрат радиуса обрезки
+     */
+    private final double cutoff2;
+    /**
+     * Энергия исходного потенциала на радиусе обрезки
+     */
+    private final double shift;
+
+    /**
+     * Конструктор класса создающий сдвинутый потенциал
+     * @param potential исходный потенциал
+     * @param cutoff радиус обрезки
+     */
+    public ShiftedPotential(PairPotential potential, double cutoff) {
+        if (!(cutoff > 0) || cutoff == Double.POSITIVE_INFINITY) {
+            throw new IllegalArgumentException("cutoff must be positive and finite: " + cutoff);
+        }
+        this.potential = potential;
+        this.cutoff = cutoff;
+        cutoff2 = cutoff * cutoff;
+        shift = potential.energy(cutoff2);
+    }
+
+    @Override
+    public double energy(double r2) {
+        return r2 < cutoff2 ? potential.energy(r2) - shift : 0;
+    }
+
+    @Override
+    public double energyAndForce(double r2, double[] force) {
+        if (r2 >= cutoff2) {
+            force[0] = 0;
+            return 0;
+        }
+        return potential.energyAndForce(r2, force) - shift;
+    }
+
+    @Override
+    public double getCutoff() {
+        return Math.min(cutoff, potential.getCutoff());
+    }
+
+    @Override
+    public String toString() {
+        return potential + "@" + cutoff;
+    }
+}
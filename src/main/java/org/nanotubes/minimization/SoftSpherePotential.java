@@ -0,0 +1,65 @@
+package org.nanotubes.minimization;
+
+/**
+ * Класс потенциала мягких сфер epsilon*(1 - r/sigma)^2: частицы отталкиваются только при перекрытии (r < sigma),
+ * поэтому потенциал сам обрезан на расстоянии sigma и энергия на нем равна нулю
+ */
+public final class SoftSpherePotential implements PairPotential {
+    /**
+     * Жесткость отталкивания
+     */
+    private final double epsilon;
+    /**
+     * Диаметр частицы (расстояние, с которого начинается отталкивание)
+     */
+    private final double sigma;
+    /**
+     * Квадрат sigma
+     */
+    private final double sigma2;
+
+    /**
+     * Конструктор класса создающий потенциал мягких сфер
+     * @param epsilon жесткость отталкивания
+     * @param sigma диаметр частицы
+     */
+    public SoftSpherePotential(double epsilon, double sigma) {
+        if (!(sigma > 0)) {
+            throw new IllegalArgumentException("sigma must be positive: " + sigma);
+        }
+        this.epsilon = epsilon;
+        this.sigma = sigma;
+        sigma2 = sigma * sigma;
+    }
+
+    @Override
+    public double energy(double r2) {
+        if (r2 >= sigma2) {
+            return 0;
+        }
+        double overlap = 1 - Math.sqrt(r2) / sigma;
+        return epsilon * overlap * overlap;
+    }
+
+    @Override
+    public double energyAndForce(double r2, double[] force) {
+        if (r2 >= sigma2) {
+            force[0] = 0;
+            return 0;
+        }
+        double r = Math.sqrt(r2);
+        double overlap = 1 - r / sigma;
+        force[0] = 2 * epsilon * overlap / (sigma * r);
+        return epsilon * overlap * overlap;
+    }
+
+    @Override
+    public double getCutoff() {
+        return sigma;
+    }
+
+    @Override
+    public String toString() {
+        return "soft:" + epsilon + "," + sigma;
+    }
+}
@@ -0,0 +1,252 @@
+package org.nanotubes.minimization;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Класс читающий файл траектории, записанный TrajectoryWriter. Кадры читаются через отображение файла в память окнами
+ * по WINDOW_SIZE байт, поэтому переход к любому кадру занимает O(1) и не требует чтения предыдущих кадров
+ */
+public class TrajectoryReader implements Closeable {
+    /**
+     * Наибольший размер окна отображения файла в память
+     */
+    private static final long WINDOW_SIZE = 256L << 20;
+
+    /**
+     * Канал файла траектории
+     */
+    private final FileChannel channel;
+    /**
+     * Количество частиц
+     */
+    private final int numberOfParticle;
+    /**
+     * Через сколько шагов записан кадр
+     */
+    private final int stride;
+    /**
+     * Описания потенциалов взаимодействия частиц и частицы с краем цилиндра (PairPotential.toString())
+     */
+    private final String pair, wall;
+    /**
+     * Параметры цилиндра
+     */
+    private final double radiusTube, heightTube;
+    /**
+     * Координаты rho и радиусы частиц
+     */
+    private final double[] rho, radius;
+    /**
+     * Размер кадра в байтах
+     */
+    private final int frameSize;
+    /**
+     * Количество кадров в окне отображения
+     */
+    private final int framesPerWindow;
+    /**
+     * Количество полных кадров в файле
+     */
+    private final long frameCount;
+    /**
+     * Смещение первого кадра от начала файла
+     */
+    private final long dataStart;
+    /**
+     * Текущее окно отображения
+     */
+    private MappedByteBuffer window;
+    /**
+     * Номер первого кадра текущего окна
+     */
+    private long windowFirst = -1;
+
+    /**
+     * Конструктор класса открывающий файл траектории
+     * @param file файл траектории
+     * @throws IOException ошибка чтения или файл другого формата
+     */
+    public TrajectoryReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), TrajectoryWriter.HEADER_SIZE))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.remaining() < TrajectoryWriter.HEADER_SIZE || header.getInt() != TrajectoryWriter.MAGIC
+                    || header.getInt() != TrajectoryWriter.VERSION) {
+                throw new IOException(file + " is not a trajectory of version " + TrajectoryWriter.VERSION);
+            }
+            numberOfParticle = header.getInt();
+            stride = header.getInt();
+            radiusTube = header.getDouble();
+            heightTube = header.getDouble();
+            int pairSize = header.getInt();
+            int wallSize = header.getInt();
+            if (numberOfParticle < 0 || pairSize < 0 || wallSize < 0) {
+                throw new IOException(file + " has a broken header");
+            }
+
+            dataStart = TrajectoryWriter.dataStart(numberOfParticle, pairSize + wallSize);
+            ByteBuffer particles = channel.map(FileChannel.MapMode.READ_ONLY, TrajectoryWriter.HEADER_SIZE,
+                    dataStart - TrajectoryWriter.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            byte[] spec = new byte[pairSize + wallSize];
+            particles.get(spec);
+            pair = new String(spec, 0, pairSize, StandardCharsets.UTF_8);
+            wall = new String(spec, pairSize, wallSize, StandardCharsets.UTF_8);
+            rho = new double[numberOfParticle];
+            radius = new double[numberOfParticle];
+            for (int i = 0; i < numberOfParticle; i++) {
+                rho[i] = particles.getDouble();
+                radius[i] = particles.getDouble();
+            }
+
+            frameSize = TrajectoryWriter.frameSize(numberOfParticle);
+            framesPerWindow = (int) Math.max(1, WINDOW_SIZE / frameSize);
+            frameCount = Math.max(0, (channel.size() - dataStart) / frameSize);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Метод возвращающий буфер, в котором с текущей позиции начинается заданный кадр
+     * @param frame номер кадра
+     * @return буфер окна отображения
+     * @throws IOException ошибка чтения
+     */
+    private ByteBuffer seek(long frame) throws IOException {
+        if (frame < 0 || frame >= frameCount) {
+            throw new IndexOutOfBoundsException("frame " + frame + " of " + frameCount);
+        }
+        if (window == null || frame < windowFirst || frame >= windowFirst + framesPerWindow) {
+            windowFirst = frame / framesPerWindow * framesPerWindow;
+            long frames = Math.min(framesPerWindow, frameCount - windowFirst);
+            window = channel.map(FileChannel.MapMode.READ_ONLY,
+                    dataStart + windowFirst * frameSize, frames * frameSize);
+            window.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return window.position((int) ((frame - windowFirst) * frameSize));
+    }
+
+    /**
+     * Метод возвращающий номер шага минимизации, на котором записан кадр
+     * @param frame номер кадра
+     * @return номер шага
+     * @throws IOException ошибка чтения
+     */
+    public long getStep(long frame) throws IOException {
+        return seek(frame).getLong();
+    }
+
+    /**
+     * Метод возвращающий энергию системы в кадре
+     * @param frame номер кадра
+     * @return энергия системы
+     * @throws IOException ошибка чтения
+     */
+    public double getEnergy(long frame) throws IOException {
+        ByteBuffer buffer = seek(frame);
+        return buffer.getDouble(buffer.position() + 8);
+    }
+
+    /**
+     * Метод читающий координаты частиц в кадре
+     * @param frame номер кадра
+     * @param phi массив для координат phi длиной не меньше количества частиц
+     * @param z массив для координат z длиной не меньше количества частиц
+     * @throws IOException ошибка чтения
+     */
+    public void readFrame(long frame, double[] phi, double[] z) throws IOException {
+        ByteBuffer buffer = seek(frame);
+        buffer.position(buffer.position() + 16);
+        buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(phi, 0, numberOfParticle).get(z, 0, numberOfParticle);
+    }
+
+    /**
+     * Метод возвращающий количество полных кадров в файле
+     * @return количество кадров
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Метод возвращающий количество частиц
+     * @return количество частиц
+     */
+    public int getNumberOfParticle() {
+        return numberOfParticle;
+    }
+
+    /**
+     * Метод возвращающий, через сколько шагов записан кадр
+     * @return шаг записи кадров
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    /**
+     * Метод возвращающий потенциал взаимодействия частиц, с которым записана траектория
+     * @return потенциал взаимодействия частиц
+     */
+    public PairPotential getPairPotential() {
+        return PairPotential.of(pair);
+    }
+
+    /**
+     * Метод возвращающий потенциал взаимодействия частицы с краем цилиндра, с которым записана траектория
+     * @return потенциал взаимодействия с краем
+     */
+    public PairPotential getWallPotential() {
+        return PairPotential.of(wall);
+    }
+
+    /**
+     * Метод возвращающий радиус цилиндра
+     * @return радиус цилиндра
+     */
+    public double getRadiusTube() {
+        return radiusTube;
+    }
+
+    /**
+     * Метод возвращающий высоту цилиндра
+     * @return высота цилиндра
+     */
+    public double getHeightTube() {
+        return heightTube;
+    }
+
+    /**
+     * Метод возвращающий координату rho частицы
+     * @param i номер частицы
+     * @return координата rho в цилиндрической системе
+     */
+    public double getRho(int i) {
+        return rho[i];
+    }
+
+    /**
+     * Метод возвращающий радиус частицы
+     * @param i номер частицы
+     * @return радиус частицы
+     */
+    public double getRadius(int i) {
+        return radius[i];
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
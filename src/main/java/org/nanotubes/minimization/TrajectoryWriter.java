@@ -0,0 +1,217 @@
+package org.nanotubes.minimization;
+
+import org.nanotubes.generation.Geom.ParticleSystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Класс дописывающий кадры минимизации в двоичный файл траектории.
+ * Формат (порядок байтов little-endian): заголовок HEADER_SIZE байт (метка, версия, количество частиц, шаг записи кадров,
+ * радиус и высота цилиндра, длины описаний потенциалов), затем описания потенциалов взаимодействия частиц и частицы
+ * с краем (PairPotential.toString() в UTF-8), затем для каждой частицы rho и радиус, затем кадры одинакового размера:
+ * номер шага (long), энергия, phi всех частиц, z всех частиц (float64). Кадр недописанный при аварийном завершении
+ * отбрасывается при чтении и при повторном открытии файла для дописывания. Кадры шагов, уже записанных в файл, пропускаются,
+ * поэтому продолжение расчета с контрольной точки не повторяет кадры
+ */
+public class TrajectoryWriter implements Closeable {
+    /**
+     * Метка файла траектории ("NTTR")
+     */
+    static final int MAGIC = 0x4E545452;
+    /**
+     * Версия формата траектории
+     */
+    static final int VERSION = 2;
+    /**
+     * Размер заголовка в байтах
+     */
+    static final int HEADER_SIZE = 64;
+
+    /**
+     * Канал файла траектории
+     */
+    private final FileChannel channel;
+    /**
+     * Буфер одного кадра
+     */
+    private final ByteBuffer frame;
+    /**
+     * Количество частиц
+     */
+    private final int numberOfParticle;
+    /**
+     * Через сколько шагов записывается кадр
+     */
+    private final int stride;
+    /**
+     * Номер шага последнего записанного кадра (-1 - кадров нет)
+     */
+    private long lastStep = -1;
+
+    /**
+     * Конструктор класса открывающий файл траектории: новый файл создается с заголовком,
+     * в существующий файл того же расчета (количество частиц, шаг записи кадров, потенциалы, размеры цилиндра, rho и радиусы частиц)
+     * кадры дописываются
+     * @param file файл траектории
+     * @param system частицы
+     * @param pair потенциал взаимодействия частиц
+     * @param wall потенциал взаимодействия частицы с краем цилиндра
+     * @param radiusTube радиус цилиндра
+     * @param heightTube высота цилиндра
+     * @param stride через сколько шагов записывается кадр
+     * @throws IOException ошибка записи или существующий файл другого расчета
+     */
+    public TrajectoryWriter(Path file, ParticleSystem system, PairPotential pair, PairPotential wall, double radiusTube,
+                            double heightTube, int stride) throws IOException {
+        if (stride <= 0) {
+            throw new IllegalArgumentException("stride must be positive: " + stride);
+        }
+        this.numberOfParticle = system.size();
+        this.stride = stride;
+        frame = ByteBuffer.allocateDirect(frameSize(numberOfParticle)).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] pairSpec = pair.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] wallSpec = wall.toString().getBytes(StandardCharsets.UTF_8);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long dataStart = dataStart(numberOfParticle, pairSpec.length + wallSpec.length);
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate((int) dataStart).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(numberOfParticle).putInt(stride)
+                        .putDouble(radiusTube).putDouble(heightTube).putInt(pairSpec.length).putInt(wallSpec.length);
+                header.position(HEADER_SIZE);
+                header.put(pairSpec).put(wallSpec);
+                for (int i = 0; i < numberOfParticle; i++) {
+                    header.putDouble(system.getRho(i)).putDouble(system.getRadius(i));
+                }
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(header, 0);
+                if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION
+                        || header.getInt() != numberOfParticle || header.getInt() != stride) {
+                    throw new IOException(file + " is not a trajectory of " + numberOfParticle + " particles with stride " + stride);
+                }
+                if (Double.compare(header.getDouble(), radiusTube) != 0 || Double.compare(header.getDouble(), heightTube) != 0) {
+                    throw new IOException(file + " is a trajectory of another tube");
+                }
+                if (header.getInt() != pairSpec.length || header.getInt() != wallSpec.length) {
+                    throw new IOException(file + " is a trajectory of another potential than " + pair + " with wall " + wall);
+                }
+                ByteBuffer particles = ByteBuffer.allocate((int) dataStart - HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(particles, HEADER_SIZE);
+                byte[] spec = new byte[pairSpec.length + wallSpec.length];
+                if (particles.remaining() >= spec.length) {
+                    particles.get(spec);
+                }
+                if (!Arrays.equals(spec, 0, pairSpec.length, pairSpec, 0, pairSpec.length)
+                        || !Arrays.equals(spec, pairSpec.length, spec.length, wallSpec, 0, wallSpec.length)) {
+                    throw new IOException(file + " is a trajectory of another potential than " + pair + " with wall " + wall);
+                }
+                for (int i = 0; i < numberOfParticle; i++) {
+                    if (particles.remaining() < 16 || Double.compare(particles.getDouble(), system.getRho(i)) != 0
+                            || Double.compare(particles.getDouble(), system.getRadius(i)) != 0) {
+                        throw new IOException(file + " is a trajectory of other particles (rho or radius of particle " + i + " differs)");
+                    }
+                }
+                // недописанный последний кадр отбрасывается
+                long frames = Math.max(0, (channel.size() - dataStart) / frame.capacity());
+                channel.truncate(dataStart + frames * frame.capacity());
+                if (frames > 0) {
+                    ByteBuffer step = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                    channel.read(step, dataStart + (frames - 1) * frame.capacity());
+                    lastStep = step.flip().getLong();
+                }
+            }
+            channel.position(channel.size());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Метод читающий из файла столько байт, сколько помещается в буфер (меньше, если файл короче)
+     * @param buffer буфер, после чтения подготовленный для разбора
+     * @param position смещение от начала файла
+     * @throws IOException ошибка чтения
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Метод возвращающий размер кадра в байтах
+     * @param numberOfParticle количество частиц
+     * @return размер кадра
+     */
+    static int frameSize(int numberOfParticle) {
+        return 16 + 16 * numberOfParticle;
+    }
+
+    /**
+     * Метод возвращающий смещение первого кадра от начала файла
+     * @param numberOfParticle количество частиц
+     * @param specSize суммарная длина описаний потенциалов в байтах
+     * @return смещение первого кадра
+     */
+    static long dataStart(int numberOfParticle, int specSize) {
+        return HEADER_SIZE + specSize + 16L * numberOfParticle;
+    }
+
+    /**
+     * Метод записывающий кадр, если номер шага кратен шагу записи кадров и больше номера шага последнего записанного кадра
+     * @param step номер шага минимизации
+     * @param energy энергия системы
+     * @param system частицы
+     * @throws IOException ошибка записи
+     */
+    public void record(int step, double energy, ParticleSystem system) throws IOException {
+        if (step % stride != 0 || step <= lastStep) {
+            return;
+        }
+        lastStep = step;
+        frame.clear();
+        frame.putLong(step).putDouble(energy);
+        for (int i = 0; i < numberOfParticle; i++) {
+            frame.putDouble(system.getPhi(i));
+        }
+        for (int i = 0; i < numberOfParticle; i++) {
+            frame.putDouble(system.getZ(i));
+        }
+        frame.flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    /**
+     * Метод возвращающий, через сколько шагов записывается кадр
+     * @return шаг записи кадров
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
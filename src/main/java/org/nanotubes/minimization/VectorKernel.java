@@ -0,0 +1,186 @@
+package org.nanotubes.minimization;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.nanotubes.generation.Geom.ParticleSystem;
+
+/**
+ * Класс вычисляющий взаимодействие 1/r^degree выбранной частицы со всеми остальными частицами векторными командами
+ * (jdk.incubator.vector): пары частиц обрабатываются по SPECIES.length() за раз прямо из массивов ParticleSystem.
+ * Ближайший образ частицы на развертке с периодом 2pi*R находится без ветвлений: округление dx / width до целого
+ * (Math.rint скалярного цикла) выполняется прибавлением и вычитанием 1.5*2^52, а сама частица и элементы за концом
+ * массива исключаются бесконечным расстоянием.
+ * Для каждой пары выполняются те же операции, что и в скалярном цикле, отличается только порядок сложения пар.
+ * Класс загружается, только если модуль jdk.incubator.vector подключен (--add-modules jdk.incubator.vector),
+ * иначе Minimization использует скалярный цикл
+ */
+final class VectorKernel {
+    /**
+     * Предпочтительная для процессора длина вектора (4 числа для AVX2, 8 для AVX-512)
+     */
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    /**
+     * Номера элементов вектора 0, 1, ..., SPECIES.length() - 1
+     */
+    private static final DoubleVector INDEX = DoubleVector.zero(SPECIES).addIndex(1);
+    /**
+     * Число 1.5*2^52: после прибавления к числу, меньшему 2^51 по модулю, дробная часть отбрасывается
+     * с округлением к ближайшему четному, как в Math.rint
+     */
+    private static final double ROUND = 0x1.8p52;
+    /**
+     * Бесконечность - квадрат расстояния до частиц, не участвующих в сумме
+     */
+    private static final DoubleVector INFINITY = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+
+    /**
+     * Степень (из теории)
+     */
+    private final int degree;
+    /**
+     * Длина окружности цилиндра - период развертки по x
+     */
+    private final double width;
+
+    /**
+     * Конструктор класса создающий векторное вычисление взаимодействия 1/r^degree
+     * @param degree степень (из теории)
+     * @param width длина окружности цилиндра 2pi*R
+     */
+    VectorKernel(int degree, double width) {
+        this.degree = degree;
+        this.width = width;
+    }
+
+    /**
+     * Метод проверяющий, выполняются ли векторные операции над несколькими числами сразу
+     * @return истину, если вектор содержит хотя бы два числа
+     */
+    static boolean isSupported() {
+        return SPECIES.length() >= 2;
+    }
+
+    /**
+     * Метод возвращающий длину вектора: от нее зависит порядок сложения пар, поэтому она записывается в контрольную точку
+     * @return количество чисел в векторе
+     */
+    static int length() {
+        return SPECIES.length();
+    }
+
+    /**
+     * Метод вычисляющий энергию выбранной частицы и силу, действующую на неё, так же как цикл Minimization.newParticle
+     * при учете всех пар частиц
+     * @param system координаты частиц
+     * @param i номер выбранной частицы
+     * @param force массив, в который записываются сила по phi (умноженная на rho) и сила по z
+     * @return энергия взаимодействия выбранной частицы с остальными частицами
+     */
+    double forceOfParticle(ParticleSystem system, int i, double[] force) {
+        double[] phiOfParticle = system.getPhiArray();
+        double[] rhoOfParticle = system.getRhoArray();
+        double[] zOfParticle = system.getZArray();
+        int numberOfParticle = system.size();
+        DoubleVector x = DoubleVector.broadcast(SPECIES, phiOfParticle[i] * rhoOfParticle[i]);
+        DoubleVector z = DoubleVector.broadcast(SPECIES, zOfParticle[i]);
+        DoubleVector energy = DoubleVector.zero(SPECIES);
+        DoubleVector forcePhi = DoubleVector.zero(SPECIES);
+        DoubleVector forceZ = DoubleVector.zero(SPECIES);
+        for (int j = 0; j < numberOfParticle; j += SPECIES.length()) {
+            DoubleVector dx = nearestImage(x.sub(load(phiOfParticle, j, numberOfParticle)
+                    .mul(load(rhoOfParticle, j, numberOfParticle))));
+            DoubleVector dz = z.sub(load(zOfParticle, j, numberOfParticle));
+            DoubleVector r2 = dx.mul(dx).add(dz.mul(dz)).blend(INFINITY, skipped(i, j, numberOfParticle));
+            DoubleVector energyOfPair = inversePower(r2);
+            energy = energy.add(energyOfPair);
+            DoubleVector forceOfPair = energyOfPair.mul(degree).div(r2);
+            forcePhi = forcePhi.add(forceOfPair.mul(dx));
+            forceZ = forceZ.add(forceOfPair.mul(dz));
+        }
+        force[0] = forcePhi.reduceLanes(VectorOperators.ADD);
+        force[1] = forceZ.reduceLanes(VectorOperators.ADD);
+        return energy.reduceLanes(VectorOperators.ADD);
+    }
+
+    /**
+     * Метод вычисляющий энергию взаимодействия точки с заданными координатами со всеми частицами, кроме выбранной,
+     * так же как Minimization.energyOfPair
+     * @param system координаты частиц
+     * @param phi координата phi точки
+     * @param rho координата rho точки
+     * @param z координата z точки
+     * @param i номер выбранной частицы
+     * @return энергия взаимодействия
+     */
+    double energyOfParticle(ParticleSystem system, double phi, double rho, double z, int i) {
+        double[] phiOfParticle = system.getPhiArray();
+        double[] rhoOfParticle = system.getRhoArray();
+        double[] zOfParticle = system.getZArray();
+        int numberOfParticle = system.size();
+        DoubleVector x = DoubleVector.broadcast(SPECIES, phi * rho);
+        DoubleVector zPoint = DoubleVector.broadcast(SPECIES, z);
+        DoubleVector energy = DoubleVector.zero(SPECIES);
+        for (int j = 0; j < numberOfParticle; j += SPECIES.length()) {
+            DoubleVector dx = nearestImage(x.sub(load(phiOfParticle, j, numberOfParticle)
+                    .mul(load(rhoOfParticle, j, numberOfParticle))));
+            DoubleVector dz = zPoint.sub(load(zOfParticle, j, numberOfParticle));
+            energy = energy.add(inversePower(dx.mul(dx).add(dz.mul(dz)).blend(INFINITY, skipped(i, j, numberOfParticle))));
+        }
+        return energy.reduceLanes(VectorOperators.ADD);
+    }
+
+    /**
+     * Метод переносящий разности координат x к ближайшему образу частицы: dx - width * rint(dx / width),
+     * как в скалярном цикле Minimization
+     * @param dx разности координат x = phi*rho
+     * @return разности координат x, по модулю не превосходящие width / 2
+     */
+    private DoubleVector nearestImage(DoubleVector dx) {
+        DoubleVector k = dx.div(width).add(ROUND).sub(ROUND);
+        return dx.sub(k.mul(width));
+    }
+
+    /**
+     * Метод читающий из массива вектор, начинающийся с элемента j (за концом массива - нули)
+     * @param array массив координат
+     * @param j номер первого элемента
+     * @param numberOfParticle количество частиц
+     * @return вектор координат
+     */
+    private static DoubleVector load(double[] array, int j, int numberOfParticle) {
+        return j + SPECIES.length() <= numberOfParticle ? DoubleVector.fromArray(SPECIES, array, j)
+                : DoubleVector.fromArray(SPECIES, array, j, SPECIES.indexInRange(j, numberOfParticle));
+    }
+
+    /**
+     * Метод возвращающий маску элементов вектора, не участвующих в сумме: выбранная частица и элементы за концом массива.
+     * Квадрат расстояния в них заменяется бесконечностью, поэтому их энергия и сила равны нулю без ветвлений
+     * @param i номер выбранной частицы
+     * @param j номер первого элемента вектора
+     * @param numberOfParticle количество частиц
+     * @return маска пропускаемых элементов
+     */
+    private static VectorMask<Double> skipped(int i, int j, int numberOfParticle) {
+        return INDEX.compare(VectorOperators.EQ, i - j).or(INDEX.compare(VectorOperators.GE, numberOfParticle - j));
+    }
+
+    /**
+     * Метод вычисляющий энергию 1/r^degree для каждого элемента вектора теми же операциями, что и PairKernel.energy
+     * @param r2 квадраты расстояний между частицами
+     * @return энергии взаимодействия
+     */
+    private DoubleVector inversePower(DoubleVector r2) {
+        DoubleVector inverse = DoubleVector.broadcast(SPECIES, 1).div(r2);
+        DoubleVector energy = DoubleVector.broadcast(SPECIES, 1);
+        DoubleVector x = inverse;
+        for (int n = degree >> 1; n > 0; n >>= 1) {
+            if ((n & 1) != 0) {
+                energy = energy.mul(x);
+            }
+            x = x.mul(x);
+        }
+        return (degree & 1) == 0 ? energy : energy.mul(inverse.sqrt());
+    }
+}
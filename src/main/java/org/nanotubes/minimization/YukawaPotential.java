@@ -0,0 +1,48 @@
+package org.nanotubes.minimization;
+
+/**
+ * Класс потенциала Юкавы (экранированного кулоновского взаимодействия) strength*exp(-kappa*r)/r.
+ * При kappa = 0 совпадает с кулоновским потенциалом 1/r, умноженным на strength
+ */
+public final class YukawaPotential implements PairPotential {
+    /**
+     * Множитель энергии
+     */
+    private final double strength;
+    /**
+     * Обратный радиус экранирования
+     */
+    private final double kappa;
+
+    /**
+     * Конструктор класса создающий потенциал Юкавы
+     * @param strength множитель энергии
+     * @param kappa обратный радиус экранирования
+     */
+    public YukawaPotential(double strength, double kappa) {
+        if (kappa < 0) {
+            throw new IllegalArgumentException("kappa must not be negative: " + kappa);
+        }
+        this.strength = strength;
+        this.kappa = kappa;
+    }
+
+    @Override
+    public double energy(double r2) {
+        double r = Math.sqrt(r2);
+        return strength * Math.exp(-kappa * r) / r;
+    }
+
+    @Override
+    public double energyAndForce(double r2, double[] force) {
+        double r = Math.sqrt(r2);
+        double energy = strength * Math.exp(-kappa * r) / r;
+        force[0] = energy * (1 + kappa * r) / r2;
+        return energy;
+    }
+
+    @Override
+    public String toString() {
+        return "yukawa:" + strength + "," + kappa;
+    }
+}
@@ -0,0 +1,62 @@
+package org.nanotubes.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверки продолжения серии расчетов ParameterSweep по таблице результатов
+ */
+class ParameterSweepTest {
+    private static final TubeConfiguration CONFIGURATION = new TubeConfiguration(2, 10, 50, 2, 1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void completedRowIsSkippedOnlyForSameCutoff() throws IOException {
+        Path results = directory.resolve("sweep.csv");
+        sweep(results, 0).run();
+        sweep(results, 0).run();
+        assertEquals(1, rows(results).size());
+
+        sweep(results, 1.5).run();
+        List<String> rows = rows(results);
+        assertEquals(2, rows.size());
+        assertTrue(rows.get(0).startsWith(CONFIGURATION.key() + ",0.0,ok,"), rows.get(0));
+        assertTrue(rows.get(1).startsWith(CONFIGURATION.key() + ",1.5,ok,"), rows.get(1));
+    }
+
+    @Test
+    void timedOutRowIsRunAgain() throws IOException {
+        Path results = directory.resolve("sweep.csv");
+        Files.write(results, List.of("radius,height,particles,degree,seed,cutoff,status,steps,energy,time_ms,message",
+                CONFIGURATION.key() + ",0.0,timeout,3,1.0,1000,"), StandardCharsets.UTF_8);
+        sweep(results, 0).run();
+        List<String> rows = rows(results);
+        assertEquals(2, rows.size());
+        assertTrue(rows.get(1).startsWith(CONFIGURATION.key() + ",0.0,ok,"), rows.get(1));
+    }
+
+    private static ParameterSweep sweep(Path results, double cutoff) {
+        ParameterSweep sweep = new ParameterSweep(List.of(CONFIGURATION), 1, 0, results);
+        sweep.setCutoff(cutoff);
+        return sweep;
+    }
+
+    /**
+     * Строки таблицы результатов без заголовка
+     */
+    private static List<String> rows(Path results) throws IOException {
+        List<String> lines = Files.readAllLines(results, StandardCharsets.UTF_8);
+        return lines.subList(1, lines.size());
+    }
+}
@@ -0,0 +1,75 @@
+package org.nanotubes.generation.PoissonDisk;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверки распределения Пуассона PoissonDiskIn2D и ParallelPoissonDiskIn2D: минимальное расстояние между точками проверяется PoissonDiskValidator
+ */
+class PoissonDiskTest {
+
+    @Test
+    void serialPointsKeepMinimumDistance() {
+        for (boolean periodic : new boolean[]{false, true}) {
+            PoissonDiskIn2D sampler = new PoissonDiskIn2D(0, 0, 60, 40, 1, PoissonDiskIn2D.DEFAULT_POINTS_TO_GENERATE,
+                    new SplittableRandom(1), periodic);
+            assertEquals(1000, sampler.sample(1000));
+            PoissonDiskValidator.validate(sampler.getPointsX(), sampler.getPointsY(), 0, 0, 60, 40, 1, periodic);
+        }
+    }
+
+    @Test
+    void serialSampleStopsAtCountNearCapacity() {
+        // почти заполненное поле: недостающие точки добирает алгоритм Бридсона, который не должен превысить count
+        for (int count = 900; count <= 1300; count += 37) {
+            PoissonDiskIn2D sampler = new PoissonDiskIn2D(0, 0, 40, 40, 1, PoissonDiskIn2D.DEFAULT_POINTS_TO_GENERATE,
+                    new SplittableRandom(count), true);
+            int created = sampler.sample(count);
+            assertTrue(created <= count, created + " > " + count);
+            assertEquals(created, sampler.getPointsX().length);
+            PoissonDiskValidator.validate(sampler.getPointsX(), sampler.getPointsY(), 0, 0, 40, 40, 1, true);
+        }
+    }
+
+    @Test
+    void serialFullFieldStopsAtMaxPoints() {
+        PoissonDiskIn2D sampler = new PoissonDiskIn2D(0, 0, 300, 300, 1, PoissonDiskIn2D.DEFAULT_POINTS_TO_GENERATE,
+                new SplittableRandom(2), false);
+        assertEquals(PoissonDiskIn2D.MAX_POINTS, sampler.ListOfPointsPoissonDisk().size());
+    }
+
+    @Test
+    void parallelPointsKeepMinimumDistanceAndCount() {
+        for (boolean periodic : new boolean[]{false, true}) {
+            int capacity = new ParallelPoissonDiskIn2D(0, 0, 300, 200, 1, PoissonDiskIn2D.DEFAULT_POINTS_TO_GENERATE,
+                    new SplittableRandom(1), periodic).sample(Integer.MAX_VALUE);
+            // при 98% заполнения часть плиток не вмещает свою долю точек
+            int count = (int) (capacity * 0.98);
+            double[] x = null;
+            for (int threads : new int[]{1, 4}) {
+                ParallelPoissonDiskIn2D sampler = new ParallelPoissonDiskIn2D(0, 0, 300, 200, 1,
+                        PoissonDiskIn2D.DEFAULT_POINTS_TO_GENERATE, new SplittableRandom(7), periodic);
+                sampler.setParallelism(threads);
+                assertEquals(count, sampler.sample(count));
+                PoissonDiskValidator.validate(sampler.getPointsX(), sampler.getPointsY(), 0, 0, 300, 200, 1, periodic);
+                if (x != null) {
+                    assertArrayEquals(x, sampler.getPointsX(), "result depends on the number of threads");
+                }
+                x = sampler.getPointsX();
+            }
+        }
+    }
+
+    @Test
+    void parallelFullFieldKeepsMinimumDistance() {
+        ParallelPoissonDiskIn2D sampler = new ParallelPoissonDiskIn2D(0, 0, 200, 100, 1,
+                PoissonDiskIn2D.DEFAULT_POINTS_TO_GENERATE, new SplittableRandom(3), true);
+        sampler.sample(Integer.MAX_VALUE);
+        assertEquals(0, PoissonDiskValidator.countViolations(sampler.getPointsX(), sampler.getPointsY(), 0, 0, 200, 100, 1, true));
+    }
+}
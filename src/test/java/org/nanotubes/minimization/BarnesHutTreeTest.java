@@ -0,0 +1,68 @@
+package org.nanotubes.minimization;
+
+import org.junit.jupiter.api.Test;
+import org.nanotubes.generation.Generation;
+import org.nanotubes.generation.Geom.ParticleSystem;
+import org.nanotubes.generation.Geom.Tube;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Сравнение дерева Барнса-Хата с перебором всех пар частиц: при theta = 0 результаты совпадают, при theta = 0.5
+ * ошибка ограничена
+ */
+class BarnesHutTreeTest {
+
+    @Test
+    void zeroThetaMatchesExactSum() {
+        Tube tube = new Tube(3, 10);
+        ParticleSystem system = new Generation(tube, 500, 5).ParticleSystemGeneration();
+        int numberOfParticle = system.size();
+        for (int degree = 1; degree <= 3; degree++) {
+            double[] expectedX = new double[numberOfParticle], expectedZ = new double[numberOfParticle];
+            double expected = new ForceField(degree, tube).evaluate(system, expectedX, expectedZ);
+
+            // при theta = 0 ни один узел не заменяется центром, и дерево перебирает все пары
+            ForceField tree = new ForceField(degree, tube);
+            tree.setTree(0);
+            double[] gradX = new double[numberOfParticle], gradZ = new double[numberOfParticle];
+            double energy = tree.evaluate(system, gradX, gradZ);
+
+            assertEquals(expected, energy, 1e-12 * Math.abs(expected), "degree " + degree);
+            double scale = ForceField.norm(expectedX, expectedZ);
+            for (int i = 0; i < numberOfParticle; i++) {
+                String message = "degree " + degree + " particle " + i;
+                assertEquals(expectedX[i], gradX[i], 1e-12 * Math.max(scale, Math.abs(expectedX[i])), message);
+                assertEquals(expectedZ[i], gradZ[i], 1e-12 * Math.max(scale, Math.abs(expectedZ[i])), message);
+            }
+        }
+    }
+
+    @Test
+    void halfThetaIsCloseToExactSum() {
+        Tube tube = new Tube(10, 40);
+        ParticleSystem system = new Generation(tube, 4000, 5).ParticleSystemGeneration();
+        int numberOfParticle = system.size();
+        for (int degree = 1; degree <= 3; degree++) {
+            double[] expectedX = new double[numberOfParticle], expectedZ = new double[numberOfParticle];
+            double expected = new ForceField(degree, tube).evaluate(system, expectedX, expectedZ);
+
+            ForceField tree = new ForceField(degree, tube);
+            tree.setTree(0.5);
+            double[] gradX = new double[numberOfParticle], gradZ = new double[numberOfParticle];
+            double energy = tree.evaluate(system, gradX, gradZ);
+
+            // ошибка энергии растет с дальнодействием: около 1e-3 для degree = 1, 2e-4 для 2 и 2e-7 для 3
+            double relative = Math.abs(energy - expected) / Math.abs(expected);
+            assertTrue(relative < 5e-3, "degree " + degree + " relative energy error " + relative);
+            double error = 0;
+            for (int i = 0; i < numberOfParticle; i++) {
+                double ex = gradX[i] - expectedX[i], ez = gradZ[i] - expectedZ[i];
+                error += ex * ex + ez * ez;
+            }
+            relative = Math.sqrt(error / numberOfParticle) / ForceField.norm(expectedX, expectedZ);
+            assertTrue(relative < 1e-3, "degree " + degree + " relative gradient error " + relative);
+        }
+    }
+}
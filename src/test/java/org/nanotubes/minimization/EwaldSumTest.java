@@ -0,0 +1,74 @@
+package org.nanotubes.minimization;
+
+import org.junit.jupiter.api.Test;
+import org.nanotubes.generation.Generation;
+import org.nanotubes.generation.Geom.ParticleSystem;
+import org.nanotubes.generation.Geom.Tube;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Сравнение суммы Эвальда EwaldSum с прямой суммой по образам частиц
+ */
+class EwaldSumTest {
+    /**
+     * Количество образов с каждой стороны в прямой сумме
+     */
+    private static final int IMAGES = 2000;
+
+    @Test
+    void matchesImageSum() {
+        Tube tube = new Tube(3, 10);
+        double width = 2 * Math.PI * tube.getRadius();
+        ParticleSystem system = new Generation(tube, 100, 5).ParticleSystemGeneration();
+        int numberOfParticle = system.size();
+
+        double expected = 0;
+        double[] expectedX = new double[numberOfParticle], expectedZ = new double[numberOfParticle];
+        double[] pair = new double[3];
+        for (int i = 0; i < numberOfParticle; i++) {
+            for (int j = i + 1; j < numberOfParticle; j++) {
+                double dx = system.getPhi(i) * system.getRho(i) - system.getPhi(j) * system.getRho(j);
+                dx -= width * Math.rint(dx / width);
+                imageSum(dx, system.getZ(i) - system.getZ(j), width, pair);
+                expected += pair[0];
+                expectedX[i] += pair[1];
+                expectedZ[i] += pair[2];
+                expectedX[j] -= pair[1];
+                expectedZ[j] -= pair[2];
+            }
+        }
+
+        double[] gradX = new double[numberOfParticle], gradZ = new double[numberOfParticle];
+        double energy = new EwaldSum(tube, 3, 1e-6).evaluate(system, 1, gradX, gradZ);
+        assertEquals(expected, energy, 1e-6 * Math.abs(expected));
+        double error = 0;
+        for (int i = 0; i < numberOfParticle; i++) {
+            double ex = gradX[i] - expectedX[i], ez = gradZ[i] - expectedZ[i];
+            error += ex * ex + ez * ez;
+        }
+        double relative = Math.sqrt(error / numberOfParticle) / ForceField.norm(expectedX, expectedZ);
+        assertTrue(relative < 1e-5, "relative gradient error " + relative);
+    }
+
+    /**
+     * Энергия пары 1/r + сумма по образам n != 0 величин 1/|r + n*L| - 1/(|n|*L) и её производные по x и z
+     * (остаток суммы за IMAGES образами учтен первым членом разложения)
+     */
+    private static void imageSum(double x, double z, double width, double[] result) {
+        double energy = 0, gradX = 0, gradZ = 0;
+        for (int n = -IMAGES; n <= IMAGES; n++) {
+            double dx = x + n * width, r2 = dx * dx + z * z, r = Math.sqrt(r2);
+            energy += 1 / r;
+            gradX -= dx / (r2 * r);
+            gradZ -= z / (r2 * r);
+            if (n != 0) {
+                energy -= 1 / (Math.abs(n) * width);
+            }
+        }
+        result[0] = energy + (2 * x * x - z * z) / (width * width * width) / (2.0 * IMAGES * IMAGES);
+        result[1] = gradX;
+        result[2] = gradZ;
+    }
+}
@@ -0,0 +1,93 @@
+package org.nanotubes.minimization;
+
+import org.junit.jupiter.api.Test;
+import org.nanotubes.generation.Generation;
+import org.nanotubes.generation.Geom.ParticleSystem;
+import org.nanotubes.generation.Geom.Tube;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверки ForceField и минимизаторов по градиенту: аналитический градиент сравнивается с центральными разностями,
+ * FIRE и Барзилай-Борвейн должны понижать энергию до заданной точности, а энергия Minimization - совпадать с ForceField
+ */
+class ForceFieldTest {
+    /**
+     * Цилиндр радиуса 3: период развертки 2pi*R отличается от 2pi
+     */
+    private static final Tube TUBE = new Tube(3, 10);
+    /**
+     * Шаг центральных разностей
+     */
+    private static final double STEP = 1e-6;
+
+    @Test
+    void gradientMatchesFiniteDifferences() {
+        for (String spec : new String[]{"power:1", "power:2", "lj:1,0.8@2.5", "yukawa:1,0.5"}) {
+            for (double cutoff : new double[]{0, 2.5}) {
+                PairPotential pair = PairPotential.of(spec);
+                ForceField field = new ForceField(pair, new InversePowerPotential(2), TUBE);
+                field.setCutoff(cutoff);
+                ParticleSystem system = new Generation(TUBE, 60, 7).ParticleSystemGeneration();
+                double[] gradX = new double[system.size()], gradZ = new double[system.size()];
+                field.evaluate(system, gradX, gradZ);
+                double scale = ForceField.norm(gradX, gradZ);
+                for (int i = 0; i < system.size(); i += 7) {
+                    String message = spec + " cutoff " + cutoff + " particle " + i;
+                    double phi = system.getPhi(i), rho = system.getRho(i), z = system.getZ(i);
+                    system.move(i, phi + STEP / rho, z);
+                    double plus = energy(field, system);
+                    system.move(i, phi - STEP / rho, z);
+                    double minus = energy(field, system);
+                    assertEquals((plus - minus) / (2 * STEP), gradX[i], 1e-6 * scale, "x " + message);
+                    system.move(i, phi, z + STEP);
+                    plus = energy(field, system);
+                    system.move(i, phi, z - STEP);
+                    minus = energy(field, system);
+                    assertEquals((plus - minus) / (2 * STEP), gradZ[i], 1e-6 * scale, "z " + message);
+                    system.move(i, phi, z);
+                }
+            }
+        }
+    }
+
+    @Test
+    void minimizersLowerEnergyBelowTolerance() {
+        for (AbstractMinimizer minimizer : new AbstractMinimizer[]{new FireMinimizer(), new BarzilaiBorweinMinimizer()}) {
+            // мягкие сферы короче половины окружности: градиент непрерывен, и точность 1e-5 достижима
+            ForceField field = new ForceField(PairPotential.of("soft:1,1.5"), new InversePowerPotential(2), TUBE);
+            ParticleSystem system = new Generation(TUBE, 100, 3).ParticleSystemGeneration();
+            double initial = energy(field, system);
+            minimizer.setTolerance(1e-5);
+            MinimizerResult result = minimizer.minimize(field, system);
+            String message = minimizer.getClass().getSimpleName();
+            assertTrue(result.isConverged(), message);
+            assertTrue(result.getEnergy().getLast() < initial, message);
+
+            double[] gradX = new double[system.size()], gradZ = new double[system.size()];
+            double energy = field.evaluate(system, gradX, gradZ);
+            assertEquals(result.getEnergy().getLast(), energy, 1e-12 * energy, message);
+            assertTrue(ForceField.norm(gradX, gradZ) < 1e-5, message + " gradient " + ForceField.norm(gradX, gradZ));
+        }
+    }
+
+    @Test
+    void minimizationEnergyMatchesForceField() {
+        for (double cutoff : new double[]{0, 2.5}) {
+            ParticleSystem system = new Generation(TUBE, 200, 5).ParticleSystemGeneration();
+            Minimization minimization = new Minimization(system, 2, TUBE);
+            ForceField field = new ForceField(2, TUBE);
+            if (cutoff > 0) {
+                minimization.setCutoff(cutoff);
+                field.setCutoff(cutoff);
+            }
+            double expected = energy(field, system);
+            assertEquals(expected, minimization.energyOfSystem(), 1e-12 * expected, "cutoff " + cutoff);
+        }
+    }
+
+    private static double energy(ForceField field, ParticleSystem system) {
+        return field.evaluate(system, new double[system.size()], new double[system.size()]);
+    }
+}
@@ -0,0 +1,97 @@
+package org.nanotubes.minimization;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка объединения корзин MetricSeries и записи истории в контрольную точку
+ */
+class MetricSeriesTest {
+    private static final int CAPACITY = 8;
+    private static final int NUMBER_OF_VALUES = 1000;
+
+    @Test
+    void mergedBucketsMatchValues() {
+        double[] values = values();
+        MetricSeries series = new MetricSeries(CAPACITY);
+        for (double value : values) {
+            series.add(value);
+        }
+        // 1000 значений не помещаются в 8 корзин шириной 64, поэтому ширина удваивается до 128
+        assertEquals(128, series.getBucketWidth());
+        assertTrue(series.getBucketCount() <= CAPACITY, "buckets " + series.getBucketCount());
+        assertSeries(values, series);
+    }
+
+    @Test
+    void writeAndReadRoundTrip() throws IOException {
+        double[] values = values();
+        MetricSeries series = new MetricSeries(CAPACITY);
+        for (double value : values) {
+            series.add(value);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        series.write(new DataOutputStream(bytes));
+        MetricSeries read = MetricSeries.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(series.getBucketWidth(), read.getBucketWidth());
+        assertEquals(series.getBucketCount(), read.getBucketCount());
+        for (int bucket = 0; bucket < series.getBucketCount(); bucket++) {
+            assertEquals(series.getMin(bucket), read.getMin(bucket));
+            assertEquals(series.getMax(bucket), read.getMax(bucket));
+            assertEquals(series.getMean(bucket), read.getMean(bucket));
+        }
+        assertSeries(values, read);
+
+        // прочитанная история продолжает объединять корзины так же, как исходная
+        double[] more = new double[2 * NUMBER_OF_VALUES];
+        System.arraycopy(values, 0, more, 0, NUMBER_OF_VALUES);
+        for (int i = NUMBER_OF_VALUES; i < more.length; i++) {
+            more[i] = -i;
+            read.add(more[i]);
+        }
+        assertEquals(256, read.getBucketWidth());
+        assertSeries(more, read);
+    }
+
+    private static double[] values() {
+        SplittableRandom random = new SplittableRandom(3);
+        double[] values = new double[NUMBER_OF_VALUES];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextDouble(-1, 1) * 1000;
+        }
+        return values;
+    }
+
+    /**
+     * Сравнение корзин истории с наименьшим, наибольшим и средним значениями соответствующих шагов
+     */
+    private static void assertSeries(double[] values, MetricSeries series) {
+        assertEquals(values.length, series.size());
+        assertEquals(values[0], series.getFirst());
+        assertEquals(values[values.length - 1], series.getLast());
+        int buckets = (int) ((values.length + series.getBucketWidth() - 1) / series.getBucketWidth());
+        assertEquals(buckets, series.getBucketCount());
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int from = (int) series.getStep(bucket);
+            int to = (int) Math.min(values.length, from + series.getBucketWidth());
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY, sum = 0;
+            for (int i = from; i < to; i++) {
+                min = Math.min(min, values[i]);
+                max = Math.max(max, values[i]);
+                sum += values[i];
+            }
+            assertEquals(min, series.getMin(bucket), "bucket " + bucket);
+            assertEquals(max, series.getMax(bucket), "bucket " + bucket);
+            assertEquals(sum / (to - from), series.getMean(bucket), 1e-9, "bucket " + bucket);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.nanotubes.minimization;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nanotubes.generation.Generation;
+import org.nanotubes.generation.Geom.ParticleSystem;
+import org.nanotubes.generation.Geom.Tube;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Регрессионные проверки Minimization: режим обрезки и накопленная энергия сравниваются с перебором всех пар частиц,
+ * продолжение с контрольной точки - с непрерывным расчетом
+ */
+class MinimizationTest {
+    /**
+     * Цилиндр радиуса 3: период развертки 2pi*R отличается от 2pi, поэтому расстояние через линию склейки
+     * проверяется вместе с периодом сетки ячеек
+     */
+    private static final Tube TUBE = new Tube(3, 20);
+    private static final int NUMBER_OF_PARTICLE = 400;
+    private static final int DEGREE = 2;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void cutoffMatchesAllPairsWithinCutoff() {
+        for (double cutoff : new double[]{1.5, 4}) {
+            Minimization minimization = create();
+            minimization.setCutoff(cutoff);
+            double expected = energyOfSystem(minimization.getSystem(), cutoff);
+            assertEquals(expected, minimization.energyOfSystem(), 1e-12 * expected, "cutoff " + cutoff);
+        }
+    }
+
+    @Test
+    void cutoffLargerThanTubeMatchesAllPairs() {
+        Minimization allPairs = create();
+        Minimization cutoff = create();
+        cutoff.setCutoff(2 * Math.max(TUBE.getHeight(), 2 * Math.PI * TUBE.getRadius()));
+        double expected = allPairs.energyOfSystem();
+        assertEquals(expected, energyOfSystem(allPairs.getSystem(), Double.POSITIVE_INFINITY), 1e-12 * expected);
+        assertEquals(expected, cutoff.energyOfSystem(), 1e-12 * expected);
+    }
+
+    @Test
+    void invalidSettingsAreRejected() {
+        Minimization minimization = create();
+        assertThrows(IllegalArgumentException.class, () -> minimization.setCutoff(0));
+        assertThrows(IllegalArgumentException.class, () -> minimization.setCutoff(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> minimization.setEnergyRecomputeInterval(0));
+        assertThrows(IllegalArgumentException.class, () -> minimization.setCheckpoint(directory.resolve("checkpoint"), 0));
+    }
+
+    @Test
+    void incrementalEnergyMatchesRecomputed() {
+        for (double cutoff : new double[]{0, 1.5}) {
+            for (boolean vectorization : new boolean[]{false, true}) {
+                Minimization minimization = create();
+                minimization.setVectorization(vectorization);
+                if (cutoff > 0) {
+                    minimization.setCutoff(cutoff);
+                }
+                // энергия только накапливается по изменениям и ни разу не пересчитывается
+                minimization.setEnergyRecomputeInterval(Minimization.MAX_ITERATIONS);
+                minimization.minimizationOfSystem();
+                double recomputed = minimization.energyOfSystem();
+                assertEquals(recomputed, minimization.getArrayEnergy().getLast(), 1e-9 * recomputed,
+                        "cutoff " + cutoff + " vectorization " + vectorization);
+            }
+        }
+    }
+
+    @Test
+    void resumeFromCheckpointIsBitExact() throws IOException {
+        for (double cutoff : new double[]{0, 1.5}) {
+            for (int threads : new int[]{0, 2}) {
+                Minimization full = create(cutoff, threads);
+                full.minimizationOfSystem();
+
+                Path file = directory.resolve("checkpoint-" + cutoff + "-" + threads);
+                Minimization interrupted = create(cutoff, threads);
+                interrupted.setCheckpoint(file, 1);
+                interrupted.setListener((step, energy, coefficientForAngle, coefficientForZ, system) -> {
+                    if (step == 2) {
+                        interrupted.cancel();
+                    }
+                });
+                interrupted.minimizationOfSystem();
+
+                Minimization resumed = Minimization.resume(file);
+                resumed.minimizationOfSystem();
+                String message = "cutoff " + cutoff + " threads " + threads;
+                assertEquals(full.getArrayEnergy().size(), resumed.getArrayEnergy().size(), message);
+                assertEquals(full.getArrayEnergy().getLast(), resumed.getArrayEnergy().getLast(), 0, message);
+                for (int i = 0; i < NUMBER_OF_PARTICLE; i++) {
+                    assertEquals(full.getSystem().getPhi(i), resumed.getSystem().getPhi(i), 0, message);
+                    assertEquals(full.getSystem().getZ(i), resumed.getSystem().getZ(i), 0, message);
+                }
+            }
+        }
+    }
+
+    @Test
+    void corruptedCheckpointIsRejected() throws IOException {
+        Path file = directory.resolve("checkpoint");
+        create().writeCheckpoint(file);
+        byte[] bytes = Files.readAllBytes(file);
+        // количество частиц сразу после метки и версии
+        bytes[8] = 0x7f;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> Minimization.resume(file));
+    }
+
+    private static Minimization create() {
+        return create(0, 0);
+    }
+
+    private static Minimization create(double cutoff, int threads) {
+        ParticleSystem system = new Generation(TUBE, NUMBER_OF_PARTICLE, 11).ParticleSystemGeneration();
+        Minimization minimization = new Minimization(system, DEGREE, TUBE);
+        minimization.setSeed(11);
+        if (cutoff > 0) {
+            minimization.setCutoff(cutoff);
+        }
+        minimization.setParallelism(threads);
+        return minimization;
+    }
+
+    /**
+     * Энергия системы перебором всех пар частиц по ближайшему образу на развертке с периодом 2pi*R
+     * (пары на расстоянии больше cutoff не учитываются)
+     */
+    private static double energyOfSystem(ParticleSystem system, double cutoff) {
+        double width = 2 * Math.PI * TUBE.getRadius();
+        double energy = 0;
+        for (int i = 0; i < system.size(); i++) {
+            for (int j = 0; j < system.size(); j++) {
+                if (i != j) {
+                    double dx = system.getPhi(i) * system.getRho(i) - system.getPhi(j) * system.getRho(j);
+                    dx -= width * Math.rint(dx / width);
+                    double dz = system.getZ(i) - system.getZ(j);
+                    double r2 = dx * dx + dz * dz;
+                    if (r2 <= cutoff * cutoff) {
+                        energy += Math.pow(r2, -DEGREE / 2.0);
+                    }
+                }
+            }
+            double dTop = system.getZ(i) - TUBE.getHeight() / 2, dBottom = system.getZ(i) + TUBE.getHeight() / 2;
+            energy += Math.pow(dTop, -DEGREE) + Math.pow(dBottom, -DEGREE);
+        }
+        return energy;
+    }
+}
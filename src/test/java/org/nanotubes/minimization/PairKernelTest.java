@@ -0,0 +1,31 @@
+package org.nanotubes.minimization;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Сравнение целых степеней PairKernel с Math.pow
+ */
+class PairKernelTest {
+    /**
+     * Допустимая относительная погрешность (несколько последних разрядов)
+     */
+    private static final double TOLERANCE = 1e-14;
+
+    @Test
+    void energyAndForceMatchMathPow() {
+        for (int degree = 1; degree <= 12; degree++) {
+            for (double r2 = 0.01; r2 < 100; r2 *= 1.37) {
+                double energy = PairKernel.energy(r2, degree);
+                assertRelative(Math.pow(r2, -degree / 2.0), energy, "energy degree " + degree + " r2 " + r2);
+                assertRelative(degree * Math.pow(r2, -(degree + 2) / 2.0), PairKernel.force(r2, energy, degree),
+                        "force degree " + degree + " r2 " + r2);
+            }
+        }
+    }
+
+    private static void assertRelative(double expected, double actual, String message) {
+        assertEquals(expected, actual, TOLERANCE * Math.abs(expected), message);
+    }
+}
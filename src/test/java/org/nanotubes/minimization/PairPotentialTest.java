@@ -0,0 +1,57 @@
+package org.nanotubes.minimization;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проверки потенциалов PairPotential: множитель силы сравнивается с центральной разностью энергии по r,
+ * сдвинутый потенциал должен обращаться в ноль на радиусе обрезки
+ */
+class PairPotentialTest {
+    private static final String[] SPECS = {"power:1", "power:2", "power:3", "lj:1.0,1.0", "lj:0.5,1.2",
+            "yukawa:1.0,0.5", "soft:1.0,1.5", "lj:1.0,1.0@2.5", "power:2@3.0", "yukawa:1.0,0.5@4.0", "soft:1.0,1.5@1.2"};
+
+    @Test
+    void forceIsMinusDerivativeOfEnergy() {
+        double[] force = new double[1];
+        for (String spec : SPECS) {
+            PairPotential potential = PairPotential.of(spec);
+            for (double r = 0.83; r < 5; r += 0.137) {
+                double r2 = r * r;
+                double energy = potential.energyAndForce(r2, force);
+                assertEquals(potential.energy(r2), energy, 0, spec + " r " + r);
+                double h = 1e-6 * r;
+                double derivative = (potential.energy((r + h) * (r + h)) - potential.energy((r - h) * (r - h))) / (2 * h);
+                // множитель силы f = -(1/r) dE/dr
+                assertEquals(-derivative, force[0] * r, 1e-6 * (Math.abs(derivative) + 1e-3), spec + " r " + r);
+            }
+        }
+    }
+
+    @Test
+    void shiftedPotentialIsZeroAtCutoff() {
+        double[] force = new double[1];
+        for (String spec : SPECS) {
+            PairPotential potential = PairPotential.of(spec);
+            double cutoff = potential.getCutoff();
+            if (cutoff == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            double r2 = cutoff * cutoff;
+            assertEquals(0, potential.energy(r2), 0, spec);
+            assertEquals(0, potential.energy(r2 * 1.01), 0, spec);
+            assertEquals(0, potential.energyAndForce(r2 * 1.01, force), 0, spec);
+            assertEquals(0, force[0], 0, spec);
+            // энергия непрерывна: чуть внутри радиуса обрезки она близка к нулю
+            assertEquals(0, potential.energy(r2 * (1 - 1e-9)), 1e-8, spec);
+        }
+    }
+
+    @Test
+    void specRoundTrip() {
+        for (String spec : SPECS) {
+            assertEquals(spec, PairPotential.of(spec).toString());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.nanotubes.minimization;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nanotubes.generation.Generation;
+import org.nanotubes.generation.Geom.ParticleSystem;
+import org.nanotubes.generation.Geom.Tube;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Запись траектории минимизации TrajectoryWriter и чтение её TrajectoryReader
+ */
+class TrajectoryTest {
+    private static final Tube TUBE = new Tube(3, 10);
+    private static final PairPotential POWER = new InversePowerPotential(2);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void framesRoundTrip() throws IOException {
+        Path file = directory.resolve("trajectory");
+        ParticleSystem system = new Generation(TUBE, 200, 5).ParticleSystemGeneration();
+        Minimization minimization = new Minimization(system, 2, TUBE);
+        try (TrajectoryWriter writer = new TrajectoryWriter(file, system, minimization.getPairPotential(),
+                minimization.getWallPotential(), TUBE.getRadius(), TUBE.getHeight(), 1)) {
+            minimization.setTrajectory(writer);
+            minimization.minimizationOfSystem();
+        }
+
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            assertEquals(system.size(), reader.getNumberOfParticle());
+            assertEquals(1, reader.getStride());
+            assertEquals(POWER.toString(), reader.getPairPotential().toString());
+            assertEquals(POWER.toString(), reader.getWallPotential().toString());
+            assertEquals(TUBE.getRadius(), reader.getRadiusTube());
+            assertEquals(TUBE.getHeight(), reader.getHeightTube());
+            assertEquals(minimization.getArrayEnergy().size(), reader.getFrameCount());
+            long last = reader.getFrameCount() - 1;
+            assertEquals(last, reader.getStep(last));
+            assertEquals(minimization.getArrayEnergy().getLast(), reader.getEnergy(last));
+
+            double[] phi = new double[system.size()], z = new double[system.size()];
+            reader.readFrame(last, phi, z);
+            assertArrayEquals(system.getPhiArray(), phi);
+            assertArrayEquals(system.getZArray(), z);
+            for (int i = 0; i < system.size(); i++) {
+                assertEquals(system.getRho(i), reader.getRho(i));
+                assertEquals(system.getRadius(i), reader.getRadius(i));
+            }
+        }
+    }
+
+    @Test
+    void reopenAppendsOnlyNewSteps() throws IOException {
+        Path file = directory.resolve("trajectory");
+        ParticleSystem system = new Generation(TUBE, 50, 5).ParticleSystemGeneration();
+        try (TrajectoryWriter writer = new TrajectoryWriter(file, system, POWER, POWER, TUBE.getRadius(), TUBE.getHeight(), 2)) {
+            for (int step = 0; step <= 6; step++) {
+                writer.record(step, step, system);
+            }
+        }
+        try (TrajectoryWriter writer = new TrajectoryWriter(file, system, POWER, POWER, TUBE.getRadius(), TUBE.getHeight(), 2)) {
+            for (int step = 4; step <= 10; step++) {
+                writer.record(step, step, system);
+            }
+        }
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            assertEquals(6, reader.getFrameCount());
+            for (long frame = 0; frame < reader.getFrameCount(); frame++) {
+                assertEquals(2 * frame, reader.getStep(frame));
+            }
+        }
+    }
+
+    @Test
+    void reopenOfAnotherRunIsRejected() throws IOException {
+        Path file = directory.resolve("trajectory");
+        ParticleSystem system = new Generation(TUBE, 50, 5).ParticleSystemGeneration();
+        double radius = TUBE.getRadius(), height = TUBE.getHeight();
+        new TrajectoryWriter(file, system, POWER, POWER, radius, height, 1).close();
+
+        assertThrows(IOException.class, () -> new TrajectoryWriter(file, system, POWER, POWER, radius, height, 2));
+        assertThrows(IOException.class, () -> new TrajectoryWriter(file, system, POWER, POWER, radius + 1, height, 1));
+        assertThrows(IOException.class, () -> new TrajectoryWriter(file, system, POWER, POWER, radius, height + 1, 1));
+        // описание той же длины, другой потенциал
+        assertThrows(IOException.class,
+                () -> new TrajectoryWriter(file, system, new InversePowerPotential(3), POWER, radius, height, 1));
+        assertThrows(IOException.class, () -> new TrajectoryWriter(file, system, POWER.shifted(2.5), POWER, radius, height, 1));
+        assertThrows(IOException.class,
+                () -> new TrajectoryWriter(file, system, POWER, PairPotential.of("lj:1,1"), radius, height, 1));
+        ParticleSystem other = new ParticleSystem(system.size());
+        for (int i = 0; i < system.size(); i++) {
+            other.set(i, system.getPhi(i), system.getRho(i) * 2, system.getZ(i), system.getRadius(i));
+        }
+        assertThrows(IOException.class, () -> new TrajectoryWriter(file, other, POWER, POWER, radius, height, 1));
+    }
+}
@@ -0,0 +1,93 @@
+package org.nanotubes.minimization;
+
+import org.junit.jupiter.api.Test;
+import org.nanotubes.generation.Generation;
+import org.nanotubes.generation.Geom.ParticleSystem;
+import org.nanotubes.generation.Geom.Tube;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Сравнение векторного вычисления VectorKernel со скалярным циклом Minimization
+ * (выполняется, если модуль jdk.incubator.vector подключен, как в конфигурации surefire)
+ */
+class VectorKernelTest {
+    /**
+     * Допустимая погрешность относительно суммы модулей слагаемых (пары складываются в другом порядке)
+     */
+    private static final double TOLERANCE = 1e-13;
+
+    @Test
+    void matchesScalarLoop() {
+        // количество частиц не кратно длине вектора, поэтому проверяется и неполный последний вектор
+        Tube tube = new Tube(2, 8);
+        double width = 2 * Math.PI * tube.getRadius();
+        ParticleSystem system = new Generation(tube, 301, 5).ParticleSystemGeneration();
+        for (int degree = 1; degree <= 4; degree++) {
+            assumeTrue(new Minimization(system, degree, tube).isVectorized(), "jdk.incubator.vector is not available");
+            VectorKernel kernel = new VectorKernel(degree, width);
+            double[] force = new double[2];
+            double[] expected = new double[6];
+            for (int i = 0; i < system.size(); i++) {
+                forceOfParticle(system, i, degree, width, expected);
+                double energy = kernel.forceOfParticle(system, i, force);
+                String message = "degree " + degree + " particle " + i;
+                assertEquals(expected[0], energy, TOLERANCE * expected[3], message);
+                assertEquals(expected[1], force[0], TOLERANCE * expected[4], message);
+                assertEquals(expected[2], force[1], TOLERANCE * expected[5], message);
+
+                // пробные точки рядом с частицей, в том числе с углом phi за пределами [0, 2pi)
+                for (double shift : new double[]{0.01, -2 * Math.PI - 0.01, 2 * Math.PI + 0.01}) {
+                    double phi = system.getPhi(i) + shift, z = system.getZ(i) - 0.01;
+                    energyOfParticle(system, phi, system.getRho(i), z, i, degree, width, expected);
+                    assertEquals(expected[0], kernel.energyOfParticle(system, phi, system.getRho(i), z, i),
+                            TOLERANCE * expected[0], message + " shift " + shift);
+                }
+            }
+        }
+    }
+
+    /**
+     * Скалярный цикл Minimization.newParticle по всем парам: в result записываются энергия, силы по phi и z
+     * и суммы модулей их слагаемых
+     */
+    private static void forceOfParticle(ParticleSystem system, int i, int degree, double width, double[] result) {
+        double x = system.getPhi(i) * system.getRho(i), z = system.getZ(i);
+        Arrays.fill(result, 0);
+        for (int j = 0; j < system.size(); j++) {
+            if (i != j) {
+                double dx = x - system.getPhi(j) * system.getRho(j);
+                dx -= width * Math.rint(dx / width);
+                double dz = z - system.getZ(j);
+                double r2 = dx * dx + dz * dz;
+                double energy = PairKernel.energy(r2, degree);
+                double force = PairKernel.force(r2, energy, degree);
+                result[0] += energy;
+                result[3] += energy;
+                result[1] += force * dx;
+                result[4] += Math.abs(force * dx);
+                result[2] += force * dz;
+                result[5] += Math.abs(force * dz);
+            }
+        }
+    }
+
+    /**
+     * Скалярный цикл Minimization.energyOfPair по всем парам без стенок: в result записывается энергия
+     */
+    private static void energyOfParticle(ParticleSystem system, double phi, double rho, double z, int i, int degree,
+                                         double width, double[] result) {
+        result[0] = 0;
+        for (int j = 0; j < system.size(); j++) {
+            if (i != j) {
+                double dx = phi * rho - system.getPhi(j) * system.getRho(j);
+                dx -= width * Math.rint(dx / width);
+                double dz = z - system.getZ(j);
+                result[0] += PairKernel.energy(dx * dx + dz * dz, degree);
+            }
+        }
+    }
+}